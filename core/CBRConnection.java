@@ -75,7 +75,11 @@ public class CBRConnection extends Connection {
 	/**
 	 * Gets the transferdonetime
 	 */
+	@Override
 	public double getTransferDoneTime() {
+		if (this.msgOnFly == null) {
+			return Double.POSITIVE_INFINITY;
+		}
 		return transferDoneTime;
 	}
 	
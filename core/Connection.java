@@ -4,7 +4,6 @@
  */
 package core;
 
-import java.io.IOException;
 import routing.MessageRouter;
 
 /**
@@ -21,6 +20,8 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** sim time when the connection was set up or its last transfer ended */
+	private double readyTime;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -38,6 +39,7 @@ public abstract class Connection {
 		this.toInterface = toInterface;
 		this.isUp = true;
 		this.bytesTransferred = 0;
+		this.readyTime = SimClock.getTime();
 	}
 
 
@@ -114,6 +116,16 @@ public abstract class Connection {
 	protected void clearMsgOnFly() {
 		this.msgOnFly = null;
 		this.msgFromNode = null;		
+		this.readyTime = SimClock.getTime();
+	}
+
+	/**
+	 * Returns the simulation time when the connection was set up or when
+	 * its latest transfer was finalized or aborted
+	 * @return The time since when the connection has been free for transfers
+	 */
+	public double getReadyTime() {
+		return this.readyTime;
 	}
 
 	/**
@@ -122,7 +134,7 @@ public abstract class Connection {
 	 * retrieved from this connections after calling this method (using
 	 * {@link #getMessage()}).
 	 */
-	public void finalizeTransfer() throws IOException {
+	public void finalizeTransfer() {
 		assert this.msgOnFly != null : "Nothing to finalize in " + this;
 		assert msgFromNode != null : "msgFromNode is not set";
 		
@@ -139,6 +151,21 @@ public abstract class Connection {
 	 */
 	public abstract boolean isMessageTransferred();
 
+	/**
+	 * Returns the simulation time when the ongoing transfer is done if
+	 * nothing else changes. This implementation returns the current time
+	 * for ongoing transfers, since by default transfers progress only when
+	 * the connection is updated.
+	 * @return The time when the transfer is done, or 
+	 * Double.POSITIVE_INFINITY if nothing is being transferred
+	 */
+	public double getTransferDoneTime() {
+		if (this.msgOnFly == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return SimClock.getTime();
+	}
+
 	/**
 	 * Returns true if the connection is ready to transfer a message (connection
 	 * is up and there is no message being transferred).
@@ -148,6 +175,16 @@ public abstract class Connection {
 		return this.isUp && this.msgOnFly == null; 
 	}
 
+	/**
+	 * Returns true if the interfaces at both ends of the connection have
+	 * a free transfer slot (see {@link NetworkInterface#hasFreeTransferSlot()})
+	 * @return true if the interfaces can start a new transfer
+	 */
+	public boolean hasFreeTransferSlots() {
+		return this.fromInterface.hasFreeTransferSlot() && 
+			this.toInterface.hasFreeTransferSlot();
+	}
+
 	/**
 	 * Gets the message that this connection is currently transferring.
 	 * @return The message or null if no message is being transferred
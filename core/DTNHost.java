@@ -4,19 +4,17 @@
  */
 package core;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import java.lang.reflect.Array;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -32,9 +30,8 @@ import static java.sql.Types.NULL;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.TreeMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
+import misbehaviour.MisbehaviourModel;
 import movement.MovementModel;
 import movement.Path;
 import routing.MessageRouter;
@@ -48,6 +45,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	private int address;
 
 	private Coord location; 	// where is the host
+	private double movedTime;	// how long the host has been moved
 	private Coord destination;	// where is it going
 
 	private MessageRouter router;
@@ -59,12 +57,14 @@ public class DTNHost implements Comparable<DTNHost> {
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
+	/** connections of all interfaces (null if they have changed since the
+	 * list was last created) */
+	private List<Connection> connections;
 	private ModuleCommunicationBus comBus;
         
         public   ArrayList NodeInfo;
-        public Map<DTNHost,Integer> MaliciousInfo;
-        public Map<String,ArrayList> MessageInfo;
-        public Map<DTNHost,ArrayList> NInfo;
+	/** forwarding counts and suspicions of other hosts */
+	public ReputationTable reputations;
         public   ArrayList MaliciousNodes;
         public   ArrayList MsgInfo;
         public static double RatioThreshold;
@@ -74,32 +74,17 @@ public class DTNHost implements Comparable<DTNHost> {
         public static ArrayList tfr1,tfr2;
         public  long counter;
         public int index;
-        public static String fileName;
-        public static FileOutputStream fs;
-        public static BufferedWriter br;
-        public static Map f;
-        public static double count;
         public ArrayList TAs  = new ArrayList() ;
+	/** addresses of the hosts that have been found malicious */
+	private static BitSet foundMalicious;
+	/** listeners informed about the found malicious hosts */
+	private List<DetectionListener> detectionListeners;
+	/** misbehaviour model of the host or null if the host is honest */
+	private MisbehaviourModel misbehaviour;
       
 	static {
-                DTNSim.registerForReset(DTNHost.class.getCanonicalName());
+		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
 		reset();
-                count = 0;
-                f = new HashMap(1000);
-                fileName = "G:\\One Simulator\\out" + ".txt";
-            try {
-                fs = new FileOutputStream(fileName);
-            } catch (FileNotFoundException ex) {
-                Logger.getLogger(DTNHost.class.getName()).log(Level.SEVERE, null, ex);
-            }
-                br = new BufferedWriter(new OutputStreamWriter(fs));
-                
-            try {
-                br.write("START:-------");
-                br.newLine();
-            } catch (IOException ex) {
-                Logger.getLogger(DTNHost.class.getName()).log(Level.SEVERE, null, ex);
-            }
 	}
 	/**
          * 
@@ -122,6 +107,8 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location = new Coord(0,0);
 		this.address = getNextAddress();
 		this.name = groupId+address;
+		this.msgListeners = msgLs;
+		this.movListeners = movLs;
 		this.net = new ArrayList<NetworkInterface>();
 		for (NetworkInterface i : interf) {
 			NetworkInterface ni = i.replicate();
@@ -132,9 +119,6 @@ public class DTNHost implements Comparable<DTNHost> {
 		// TODO - think about the names of the interfaces and the nodes
 		//this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
 
-		this.msgListeners = msgLs;
-		this.movListeners = movLs;
-
 		// create instances by replicating the prototypes
 		this.movement = mmProto.replicate();
 		this.movement.setComBus(comBus);
@@ -145,20 +129,20 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
 
-		if (movLs != null) { // inform movement listeners about the location
-			for (MovementListener l : movLs) {
+		// inform movement listeners about the location
+		if (this.movListeners != null) {
+			for (MovementListener l : this.movListeners) {
 				l.initialLocation(this, this.location);
 			}
 		}
                 this.NodeInfo       = new ArrayList();
-                this.MaliciousInfo  = new HashMap<DTNHost,Integer>();
-                this.MessageInfo    = new HashMap<String,ArrayList>();
-                this.NInfo          = new HashMap<DTNHost,ArrayList>();
                 //this.RatioThreshold = Double.parseDouble(this.br.readLine());
                 //this.SumThreshold   = Double.parseDouble(this.br.readLine());
 
                 this.RatioThreshold = 0.43;
                 this.SumThreshold   = 100;
+                this.reputations = new ReputationTable(RatioThreshold, 
+                		SumThreshold);
                 this.counter        = (long) 20.0;
                 this.t1 = new ArrayList();
                 this.t2 = new ArrayList();
@@ -182,6 +166,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public static void reset() {
 		nextAddress = 0;
+		foundMalicious = new BitSet();
 	}
 
 	/**
@@ -192,6 +177,31 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.movement.isActive();
 	}
 
+	/**
+	 * Sets the listeners that are informed about the malicious hosts that
+	 * this host finds
+	 * @param dl The listeners
+	 */
+	public void setDetectionListeners(List<DetectionListener> dl) {
+		this.detectionListeners = dl;
+	}
+
+	/**
+	 * Sets the misbehaviour model of this host
+	 * @param misbehaviour The model or null if the host is honest
+	 */
+	public void setMisbehaviour(MisbehaviourModel misbehaviour) {
+		this.misbehaviour = misbehaviour;
+	}
+
+	/**
+	 * Returns the misbehaviour model of this host
+	 * @return The model or null if the host is honest
+	 */
+	public MisbehaviourModel getMisbehaviour() {
+		return this.misbehaviour;
+	}
+
 	/**
 	 * Set a router for this host
 	 * @param router The router to set
@@ -238,17 +248,32 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Returns a copy of the list of connections this host has with other hosts
-	 * @return a copy of the list of connections this host has with other hosts
+	 * Returns a read-only list of the connections this host has with other
+	 * hosts. The list is created again only after the connections of some 
+	 * interface have changed, and a list that has been returned is never 
+	 * modified, so it can be iterated while connections are changed.
+	 * @return a list of connections this host has with other hosts
 	 */
 	public List<Connection> getConnections() {
-		List<Connection> lc = new ArrayList<Connection>();
+		if (this.connections == null) {
+			List<Connection> lc = new ArrayList<Connection>();
 
-		for (NetworkInterface i : net) {
-			lc.addAll(i.getConnections());
+			for (NetworkInterface i : net) {
+				lc.addAll(i.getConnections());
+			}
+
+			this.connections = Collections.unmodifiableList(lc);
 		}
 
-		return lc;
+		return this.connections;
+	}
+
+	/**
+	 * Informs the host that a connection was added to or removed from one
+	 * of its interfaces
+	 */
+	void connectionsChanged() {
+		this.connections = null;
 	}
 
 	/**
@@ -268,6 +293,42 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.path;
 	}
 
+	/**
+	 * Returns the waypoint this node is currently moving towards, or the
+	 * last waypoint it reached if it is waiting for a new path (null if the
+	 * node hasn't had any path yet).
+	 * @return The destination of this node
+	 */
+	public Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed this node is moving towards its destination with
+	 * @return The speed of this node
+	 */
+	public double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Adds a movement listener for only this host. The other hosts sharing
+	 * the same movement listeners are not affected. Nothing is done if the
+	 * listener is already listening to this host.
+	 * @param l The listener to add
+	 */
+	public void addMovementListener(MovementListener l) {
+		List<MovementListener> ls = new ArrayList<MovementListener>();
+		if (this.movListeners != null) {
+			if (this.movListeners.contains(l)) {
+				return;
+			}
+			ls.addAll(this.movListeners);
+		}
+		ls.add(l);
+		this.movListeners = ls;
+	}
+
 
 	/**
 	 * Sets the Node's location overriding any location set by movement model
@@ -277,6 +338,17 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location = location.clone();
 	}
 
+	/**
+	 * Returns the total time this host has been moved (including the
+	 * movement model warmup). All hosts of the world are moved for the same
+	 * time increments, so these times can be compared between the hosts
+	 * even while the simulation clock is between two movement updates.
+	 * @return The total time this host has been moved
+	 */
+	public double getMovedTime() {
+		return this.movedTime;
+	}
+
 	/**
 	 * Sets the Node's name overriding the default name (groupId + netAddress)
 	 * @param name The name to set
@@ -309,8 +381,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public double getBufferOccupancy() {
 		double bSize = router.getBufferSize();
-		double freeBuffer = router.getFreeBufferSize();
-		return 100*((bSize-freeBuffer)/bSize);
+		double occupied = router.getOccupiedBufferSize();
+		return 100*(occupied/bSize);
 	}
 
 	/**
@@ -393,14 +465,26 @@ public class DTNHost implements Comparable<DTNHost> {
 		forceConnection(h,null,true);
 	}
 
+	/**
+	 * Prepares node's network layer for the next 
+	 * {@link #update(boolean)} call. Modifies only this node's own state, so 
+	 * different nodes can be prepared concurrently.
+	 * @param simulateConnections Should network layer be updated too
+	 */
+	public void prepareUpdate(boolean simulateConnections) {
+		if (simulateConnections) {
+			for (NetworkInterface i : net) {
+				i.prepareUpdate();
+			}
+		}
+	}
+
 	/**
 	 * Updates node's network layer and router.
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
-		
-                DTNHost to = this.router.getHost();
-                if (!isActive()) {
+		if (!isActive()) {
 			return;
 		}
 		
@@ -409,102 +493,63 @@ public class DTNHost implements Comparable<DTNHost> {
 				i.update();
 			}
 		}
-                
-                if( to.getAddress() == 1) forceToBeMalicious(to);
-                if( to.getAddress() == 3) forceToBeMalicious(to);
-                if( to.getAddress() == 5) forceToBeMalicious(to);
-                if( to.getAddress() == 7) forceToBeMalicious(to);
-                if( to.getAddress() == 9) forceToBeMalicious(to);
-                if( to.getAddress() == 11) forceToBeMalicious(to);
-                if( to.getAddress() == 13) forceToBeMalicious(to);
-                if( to.getAddress() == 15) forceToBeMalicious(to);
-                if( to.getAddress() == 17) forceToBeMalicious(to);
-                if( to.getAddress() == 19) forceToBeMalicious(to);
-                
-                if( to.getAddress() == 21) forceToBeMalicious(to);    
-                if( to.getAddress() == 23) forceToBeMalicious(to);
-                if( to.getAddress() == 25) forceToBeMalicious(to);
-                if( to.getAddress() == 27) forceToBeMalicious(to);
-                if( to.getAddress() == 29) forceToBeMalicious(to);
-                if( to.getAddress() == 31) forceToBeMalicious(to);
-                /*
-                if( to.getAddress() == 33) forceToBeMalicious(to);
-                if( to.getAddress() == 35) forceToBeMalicious(to);
-                if( to.getAddress() == 37) forceToBeMalicious(to);
-                if( to.getAddress() == 39) forceToBeMalicious(to);
-                /*
-                if( to.getAddress() == 41) forceToBeMalicious(to);
-                if( to.getAddress() == 43) forceToBeMalicious(to);
-                if( to.getAddress() == 45) forceToBeMalicious(to);
-                if( to.getAddress() == 47) forceToBeMalicious(to);
-                if( to.getAddress() == 49) forceToBeMalicious(to);
-                if( to.getAddress() == 51) forceToBeMalicious(to);
-                if( to.getAddress() == 53) forceToBeMalicious(to);
-                if( to.getAddress() == 55) forceToBeMalicious(to);
-                if( to.getAddress() == 57) forceToBeMalicious(to);
-                if( to.getAddress() == 59) forceToBeMalicious(to);         
-                
-                if( to.getAddress() == 63) forceToBeMalicious(to);
-                if( to.getAddress() == 65) forceToBeMalicious(to);
-                if( to.getAddress() == 67) forceToBeMalicious(to);
-                if( to.getAddress() == 69) forceToBeMalicious(to);
-                if( to.getAddress() == 70) forceToBeMalicious(to);
-                if( to.getAddress() == 71) forceToBeMalicious(to);
-                if( to.getAddress() == 72) forceToBeMalicious(to);
-                if( to.getAddress() == 73) forceToBeMalicious(to);
-                if( to.getAddress() == 74) forceToBeMalicious(to);
-                if( to.getAddress() == 75) forceToBeMalicious(to);
-                if( to.getAddress() == 76) forceToBeMalicious(to);
-                if( to.getAddress() == 77) forceToBeMalicious(to);
-                if( to.getAddress() == 78) forceToBeMalicious(to);
-                if( to.getAddress() == 79) forceToBeMalicious(to);
-                /*
-                if( to.getAddress() == 61) forceToBeMalicious(to);
-                if( to.getAddress() == 63) forceToBeMalicious(to);
-                if( to.getAddress() == 65) forceToBeMalicious(to);
-                if( to.getAddress() == 67) forceToBeMalicious(to);
-                if( to.getAddress() == 69) forceToBeMalicious(to);
-                
-                if( to.getAddress() == 70) forceToBeMalicious(to);
-                if( to.getAddress() == 71) forceToBeMalicious(to);
-                if( to.getAddress() == 72) forceToBeMalicious(to);
-                if( to.getAddress() == 73) forceToBeMalicious(to);
-                if( to.getAddress() == 74) forceToBeMalicious(to);
-                if( to.getAddress() == 75) forceToBeMalicious(to);
-                if( to.getAddress() == 76) forceToBeMalicious(to);
-                if( to.getAddress() == 77) forceToBeMalicious(to);
-                if( to.getAddress() == 78) forceToBeMalicious(to);
-                if( to.getAddress() == 79) forceToBeMalicious(to);
-                */
-                
-                /*
-                if( to.getAddress() == 31) forceToBeMalicious(to);
-                if( to.getAddress() == 33) forceToBeMalicious(to);
-                if( to.getAddress() == 35) forceToBeMalicious(to);
-                if( to.getAddress() == 37) forceToBeMalicious(to);
-                if( to.getAddress() == 39) forceToBeMalicious(to);
-                if( to.getAddress() == 41) forceToBeMalicious(to);
-                if( to.getAddress() == 43) forceToBeMalicious(to);
-                if( to.getAddress() == 45) forceToBeMalicious(to);
-                if( to.getAddress() == 47) forceToBeMalicious(to);
-                if( to.getAddress() == 49) forceToBeMalicious(to);
-                if( to.getAddress() == 51) forceToBeMalicious(to);
-                if( to.getAddress() == 53) forceToBeMalicious(to);
-                if( to.getAddress() == 55) forceToBeMalicious(to);
-                if( to.getAddress() == 57) forceToBeMalicious(to);
-                if( to.getAddress() == 59) forceToBeMalicious(to);
-                */
-                /*
-                if( to.getAddress() == 93) forceToBeMalicious(to);
-                if( to.getAddress() == 96) forceToBeMalicious(to);
-                
-                if( to.getAddress() == 99) forceToBeMalicious(to);
-                if( to.getAddress() == 102) forceToBeMalicious(to);
-                if( to.getAddress() == 105) forceToBeMalicious(to);
-                */
-               
-                
-                this.router.update();
+
+		if (this.misbehaviour != null) {
+			this.misbehaviour.update(this);
+		}
+
+		this.router.update();
+	}
+
+	/**
+	 * Returns the earliest simulation time when moving or updating this node
+	 * may change its state if no events happen in between (e.g., the time
+	 * when the node starts to move, becomes active or finishes a transfer).
+	 * Nodes that are moving return the current time.
+	 * @return The next time when this node needs to be updated
+	 */
+	public double getNextEventTime() {
+		if (isActive()) {
+			if (SimClock.getTime() >= this.nextTimeToMove) {
+				return SimClock.getTime(); // moving
+			}
+			return Math.min(this.nextTimeToMove, getNextUpdateTime());
+		}
+		return getNextUpdateTime();
+	}
+
+	/**
+	 * Returns the next simulation time when this node's activeness may 
+	 * change
+	 * @return The time of the next activeness change or 
+	 * Double.POSITIVE_INFINITY if the activeness doesn't change anymore
+	 */
+	public double getNextActivenessChange() {
+		return this.movement.getNextActivenessChange();
+	}
+
+	/**
+	 * Returns the earliest simulation time when {@link #update(boolean)} 
+	 * may change this node's state if the node doesn't move and no events
+	 * happen in between. Unlike {@link #getNextEventTime()}, this doesn't 
+	 * take the node's own movement into account.
+	 * @return The next time when this node needs to be updated
+	 */
+	public double getNextUpdateTime() {
+		double next = getNextActivenessChange();
+
+		if (!isActive()) {
+			return next;
+		}
+
+		if (this.misbehaviour != null) {
+			next = Math.min(next, this.misbehaviour.getNextEventTime(this));
+		}
+
+		for (NetworkInterface i : net) {
+			next = Math.min(next, i.getNextEventTime());
+		}
+		return Math.min(next, this.router.getNextEventTime());
 	}
 
 	/**
@@ -517,6 +562,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		double distance;
 		double dx, dy;
 
+		this.movedTime += timeIncrement;
 		if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
 			return; 
 		}
@@ -547,6 +593,56 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}	
 
+	/**
+	 * Moves the node towards its current destination if the node doesn't 
+	 * reach the destination during the given time. Unlike 
+	 * {@link #move(double)}, this method uses no state that is shared with 
+	 * other nodes or the movement model, so different nodes can be moved 
+	 * concurrently. The caller is responsible for checking that the node is 
+	 * active.
+	 * @param timeIncrement How long time the node moves
+	 * @return True if the node was moved or it doesn't need to move yet, 
+	 * false if nothing was done because the node would reach its 
+	 * destination (and {@link #move(double)} should be called instead)
+	 */
+	public boolean moveTowardsDestination(double timeIncrement) {
+		double possibleMovement;
+		double distance;
+
+		if (SimClock.getTime() < this.nextTimeToMove) {
+			this.movedTime += timeIncrement;
+			return true;
+		}
+		if (this.destination == null) {
+			return false;
+		}
+
+		possibleMovement = timeIncrement * speed;
+		distance = this.location.distance(this.destination);
+		if (possibleMovement >= distance) {
+			return false;
+		}
+
+		this.location.translate(
+				(possibleMovement/distance) * (this.destination.getX() -
+						this.location.getX()),
+				(possibleMovement/distance) * (this.destination.getY() -
+						this.location.getY()));
+		this.movedTime += timeIncrement;
+		return true;
+	}
+
+	/**
+	 * Advances only the moved time of an inactive node that isn't moved
+	 * (see {@link #getMovedTime()}). Like
+	 * {@link #moveTowardsDestination(double)}, this can be called for
+	 * different nodes concurrently.
+	 * @param timeIncrement How long time the node would have moved
+	 */
+	public void skipMove(double timeIncrement) {
+		this.movedTime += timeIncrement;
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -608,80 +704,6 @@ public class DTNHost implements Comparable<DTNHost> {
         return -1;
         }
         
-        public void NodeInfoUpdate(DTNHost n, String id)
-        { 
-         ArrayList tmpN = new ArrayList();
-       //ArrayList tmpp = new ArrayList(n.MessageInfo.values());
-         ArrayList tmp  = (ArrayList) n.MessageInfo.get(id);
-         DTNHost    source = (DTNHost)tmp.get(1);
-         DTNHost    dst    = (DTNHost)tmp.get(2);
-         
-         if(!n.NInfo.containsKey(source))
-         {
-                tmpN.add(1.0);
-                tmpN.add(0.0);
-                tmpN.add(POSITIVE_INFINITY);
-                n.NInfo.put(source,tmpN);
-         }
-         else
-         {
-                double frtt = 0.0;
-                ArrayList a;
-                a =(ArrayList)n.NInfo.get(source);
-                double ftt = (double)a.get(0) + 1.0;
-                double rtt = (double)a.get(1);
-                
-                if( rtt == 0.0 ) frtt = POSITIVE_INFINITY;
-                  
-                else 
-                                 frtt = (double)(ftt / rtt);
-                 
-                a.set(0,ftt);
-                a.set(2, frtt );
-                
-                if (frtt <= RatioThreshold && ftt + rtt >= SumThreshold)
-                    {
-                    int value    = 1;
-                    boolean flag = n.MaliciousInfo.containsKey(source);     
-                    if(flag)value= (int) n.MaliciousInfo.get(source) + 1;
-                    n.MaliciousInfo.put(source,value);
-                    
-                    //if(!flag)System.out.println("MALICIOUS NODE: "+source+" FIRST FOUND AT: "+SimClock.getTime()/1000.0);
-                    } 
-         }
-         
-         tmpN = new ArrayList();
-         
-         if(!n.NInfo.containsKey(dst))
-         {
-                tmpN.add(0.0);
-                tmpN.add(1.0);
-                tmpN.add(0.0);
-                n.NInfo.put(dst,tmpN);
-         }
-         else
-         {
-                double frtt = 0.0;
-                ArrayList a;
-                a =(ArrayList)n.NInfo.get(dst);
-                double ftt = (double) a.get(0);
-                double rtt = (double) a.get(1) + 1.0;
-                frtt = (double)(ftt / rtt);
-                a.set(1,rtt);
-                a.set(2, frtt );
-   
-                if (frtt <= RatioThreshold && ftt + rtt >= SumThreshold)
-                    {
-                    int value    = 1;
-                    boolean flag = n.MaliciousInfo.containsKey(dst);     
-                    if(flag) value = (int) n.MaliciousInfo.get(dst) + 1;    
-                    n.MaliciousInfo.put(dst,value);
-                    
-                    //if(!flag)System.out.println("MALICIOUS NODE: "+dst+" FIRST FOUND AT: "+SimClock.getTime()/1000.0);
-                    }
-         }
-        }   
-        
         public boolean isFound(DTNHost n,ArrayList Entry)
         {
         ArrayList tmp = new ArrayList();
@@ -693,61 +715,20 @@ public class DTNHost implements Comparable<DTNHost> {
         
         return false;
         }
-        public void getAllMsgs(DTNHost from,DTNHost to)
-        {
-        
-            
-        //ADDING IN FROM TABLE    
-        for(String key: to.MessageInfo.keySet())
-        {
-            if(!from.MessageInfo.containsKey(key))
-            {
-                ArrayList tmp;
-                tmp = (ArrayList) to.MessageInfo.get(key);    
-                from.MessageInfo.put(key,tmp);
-                NodeInfoUpdate(from, key);
-                from.MessageInfo.remove(key);
-            }
-        }
-        
-        //ADDING IN TO TABLE    
-        for(String key: from.MessageInfo.keySet())
-        {
-            if(!to.MessageInfo.containsKey(key))
-            {
-                ArrayList tmp;
-                tmp = (ArrayList) from.MessageInfo.get(key);    
-                to.MessageInfo.put(key,tmp);
-                NodeInfoUpdate(to,key);
-                to.MessageInfo.remove(key);
-            }
-        }
-        
-        }
-        
-        public void ShareMaliciousTables(DTNHost from,DTNHost to)
-        {
 
-         //ADDING IN FROM TABLE
-         for (DTNHost key : to.MaliciousInfo.keySet())
-         {
-            if(from.MaliciousInfo.containsKey(key))
-                from.MaliciousInfo.put(key,(int)from.MaliciousInfo.get(key)+1);
-            
-            else 
-                from.MaliciousInfo.put(key,1);
-         }
-         
-         //ADDING IN TO TABLE
-         for (DTNHost key : from.MaliciousInfo.keySet())
-         {
-            if(to.MaliciousInfo.containsKey(key))
-                to.MaliciousInfo.put(key,(int)to.MaliciousInfo.get(key)+1);
-            
-            else 
-                to.MaliciousInfo.put(key,1);
-         }
-        }
+	/**
+	 * Shares the suspicions of the reputation tables of two hosts: the 
+	 * suspicions that have changed in one table since the previous exchange
+	 * between the hosts are added to the other (first to the sender's and
+	 * then to the receiver's table).
+	 * @param from The host that forwarded a message
+	 * @param to The host that received the message
+	 * @see ReputationTable#receiveSuspicions(ReputationTable, DTNHost, DTNHost)
+	 */
+	public void ShareMaliciousTables(DTNHost from, DTNHost to) {
+		from.reputations.receiveSuspicions(to.reputations, from, to);
+		to.reputations.receiveSuspicions(from.reputations, to, from);
+	}
         
         
         
@@ -776,107 +757,53 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Informs the host that a message was successfully transferred.
+	 * Informs the host that a message was successfully transferred. The
+	 * reputation tables of both hosts of the transfer are updated and
+	 * shared, and the detection listeners are informed about the hosts
+	 * that are found malicious. If this host misbehaves, its misbehaviour
+	 * model may drop the message.
 	 * @param id Identifier of the message
 	 * @param from From who the message was from
 	 */
-        public void forceToBeMalicious(DTNHost n)
-        {
-        	
-            	ArrayList<Message> temp = 
-				new ArrayList<Message>(n.getMessageCollection());
-				for(int y=0;y<temp.size();y++)
-				{
-                                    Message m = temp.get(y);
-                                    if(this.router.getMessage(m.id) == temp.get(y) && temp.size() > 4) 
-                                     {
-                                        if(y ==0 || y == 1) router.deleteMessage(m.id,true);
-                                        System.out.println("---------------------------------------------NODE "+n.name+"  DROPPED MESSAGE "+m.id+"------------------------------------------");
-                                     }
-                                 }
-        }
-        
-        public void messageTransferred(String id, DTNHost from) throws IOException 
-        {
-   
-            DTNHost to = this.router.getHost();
-            ArrayList tmp = new ArrayList();
-            ArrayList tmp2 = new ArrayList();
-            //String timeStamp = Long.toString(date.getTime());
-            String timeStamp = new SimpleDateFormat("HH.mm.ss").format(new java.util.Date());
-
-            tmp.add(timeStamp);
-            tmp.add(from);
-            tmp.add(to);
-            
-            from.MessageInfo.put(id,tmp);
-            NodeInfoUpdate(from,id);
-            from.MessageInfo.remove(id);
-            
-            to.MessageInfo.put(id,tmp);
-            NodeInfoUpdate(to,id);
-            to.MessageInfo.remove(id);
-            
-            getAllMsgs(from,to);
- 
-            //MSG INFO
-            /*
-            System.out.println();
-            System.out.println("MSG INFO TABLE OF NODE: "+from);
-            System.out.println(from.MessageInfo);
-            
-            System.out.println();
-            System.out.println("MSG INFO TABLE OF NODE: "+to);
-            System.out.println(to.MessageInfo);
-            */
-            
-            //NODE INFO
-            /*
-            System.out.println();
-            System.out.println("NODE INFO TABLE OF NODE: "+from);
-            System.out.println(from.NInfo);
-            
-            System.out.println("NODE INFO TABLE OF NODE: "+to);
-            System.out.println(to.NInfo);
-            
-            //MALICIOUS TABLE
-            /*
-            System.out.println("BEFORE SHARING: MALICIOUS INFO TABLE OF NODE: "+from);
-            System.out.println(from.MaliciousInfo);
-            
-            System.out.println("BEFORE SHARING: MALICIOUS INFO TABLE OF NODE: "+to);
-            System.out.println(to.MaliciousInfo);
-            */
-            ShareMaliciousTables(from,to); 
-            br.flush();
-            
-            
-            for(DTNHost key: from.MaliciousInfo.keySet())
-            { 
-                if( from.MaliciousInfo.get(key) == 20 && !f.containsKey(key) ) 
-                {
-                    f.put(key, 1);
-                    br.write("MALICIOUS NODE: "+key+" FOUND AT: "+SimClock.getTime()/1000.0);
-                    count = count + (SimClock.getTime()/1000.0);
-                    br.newLine();               
-                    br.flush();
-                }
-            }
-            
-            for(DTNHost key: to.MaliciousInfo.keySet())
-            { 
-                if( to.MaliciousInfo.get(key) == 20 && !f.containsKey(key) )
-                {
-                    f.put(key, 1);
-                    br.write("MALICIOUS NODE: "+key+" FOUND AT: "+SimClock.getTime()/1000.0);
-                    br.newLine();
-                    br.flush();
-                }
-            }
-            
-            
-            this.router.messageTransferred(id, from);
-        }
+	public void messageTransferred(String id, DTNHost from) {
+		DTNHost to = this.router.getHost();
+
+		from.reputations.transferred(from, to);
+		to.reputations.transferred(from, to);
+		ShareMaliciousTables(from, to); 
+
+		checkFoundMalicious(from);
+		checkFoundMalicious(to);
+
+		this.router.messageTransferred(id, from);
+		if (this.misbehaviour != null) {
+			this.misbehaviour.messageReceived(this, id, from);
+		}
+	}
+
+	/**
+	 * Informs the detection listeners about the hosts that the given host's
+	 * reputation table has blacklisted since the previous check, unless
+	 * those hosts have been found before. Only the newly blacklisted hosts
+	 * are checked, so the cost doesn't grow with the number of suspects.
+	 * @param detector The host whose reputation table is checked
+	 */
+	private void checkFoundMalicious(DTNHost detector) {
+		ReputationTable t = detector.reputations;
+		for (int i = t.nextNewlyBlacklisted(0); i >= 0;
+				i = t.nextNewlyBlacklisted(i+1)) {
+			if (foundMalicious.get(i)) {
+				continue;
+			}
+			foundMalicious.set(i);
+			if (this.detectionListeners != null) {
+				for (DetectionListener dl : this.detectionListeners) {
+					dl.maliciousHostFound(t.getHost(i), detector);
+				}
+			}
+		}
+		t.clearNewlyBlacklisted();
+	}
 
 	/**
 	 * Informs the host that a message transfer was aborted.
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Versioned change tracking for a table that a host shares with the hosts
+ * it meets (gossip). The entries of the table are identified by
+ * non-negative integer keys (e.g., host addresses or message handles) and
+ * the peers by their addresses. Every change of an entry gets a new
+ * version and the latest version that was sent to each peer is
+ * remembered, so that only the entries changed since the previous exchange
+ * with a peer are sent to it. Entries whose latest change was caused by an
+ * exchange with a peer are not sent back to the same peer.
+ * <P>The changed entries of an exchange can be iterated, from the newest
+ * change to the oldest, with<BR>
+ * <CODE>for (int k = g.firstChange(peer); k >= 0;
+ * k = g.nextChange(peer, k))</CODE><BR>
+ * after which {@link #sent(int)} must be called for the peer. Iterating
+ * costs only as much as there are changes since the previous exchange.</P>
+ */
+public class DeltaGossip {
+	/** initial capacity of the tables */
+	private static final int INITIAL_CAPACITY = 16;
+	/** source of the changes made by the host itself */
+	private static final int LOCAL = -1;
+
+	/** versions of the entries by key (0 if an entry hasn't changed) */
+	private int[] versions;
+	/** peers whose gossip caused the latest change of the entries */
+	private int[] sources;
+	/** the next older entry in the change order (or -1) */
+	private int[] older;
+	/** the next newer entry in the change order (or -1) */
+	private int[] newer;
+	/** the entry that has changed most recently (or -1) */
+	private int newest;
+	/** the latest version */
+	private int version;
+	/** the latest versions that have been sent by peer address */
+	private int[] sentVersions;
+
+	/**
+	 * Constructor. Creates a gossip without any changes.
+	 */
+	public DeltaGossip() {
+		this.versions = new int[INITIAL_CAPACITY];
+		this.sources = new int[INITIAL_CAPACITY];
+		this.older = new int[INITIAL_CAPACITY];
+		this.newer = new int[INITIAL_CAPACITY];
+		this.sentVersions = new int[INITIAL_CAPACITY];
+		this.newest = -1;
+		this.version = 0;
+	}
+
+	/**
+	 * Marks an entry changed by the host itself
+	 * @param key Key of the entry
+	 */
+	public void changed(int key) {
+		changed(key, LOCAL);
+	}
+
+	/**
+	 * Marks an entry changed because of gossip from a peer
+	 * @param key Key of the entry
+	 * @param peer Address of the peer
+	 */
+	public void changed(int key, int peer) {
+		if (key >= this.versions.length) {
+			int capacity = Math.max(this.versions.length * 2, key + 1);
+			this.versions = Arrays.copyOf(this.versions, capacity);
+			this.sources = Arrays.copyOf(this.sources, capacity);
+			this.older = Arrays.copyOf(this.older, capacity);
+			this.newer = Arrays.copyOf(this.newer, capacity);
+		}
+		else if (this.versions[key] != 0) {
+			unlink(key);
+		}
+
+		this.versions[key] = ++this.version;
+		this.sources[key] = peer;
+		this.older[key] = this.newest;
+		this.newer[key] = -1;
+		if (this.newest >= 0) {
+			this.newer[this.newest] = key;
+		}
+		this.newest = key;
+	}
+
+	/**
+	 * Returns the most recently changed entry that should be sent to a peer
+	 * @param peer Address of the peer
+	 * @return Key of the entry or -1 if nothing has to be sent
+	 */
+	public int firstChange(int peer) {
+		return findChange(this.newest, peer);
+	}
+
+	/**
+	 * Returns the entry that should be sent to a peer after the given one
+	 * @param peer Address of the peer
+	 * @param key Key of the previous entry
+	 * @return Key of the entry or -1 if there are no more entries to send
+	 * @see #firstChange(int)
+	 */
+	public int nextChange(int peer, int key) {
+		return findChange(this.older[key], peer);
+	}
+
+	/**
+	 * Marks all the current changes sent to a peer
+	 * @param peer Address of the peer
+	 */
+	public void sent(int peer) {
+		if (peer >= this.sentVersions.length) {
+			this.sentVersions = Arrays.copyOf(this.sentVersions,
+					Math.max(this.sentVersions.length * 2, peer + 1));
+		}
+		this.sentVersions[peer] = this.version;
+	}
+
+	/**
+	 * Returns the latest version, i.e., how many changes there have been
+	 * @return The latest version
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Finds the first entry, starting from the given one towards the older
+	 * ones, that has changed after the previous exchange with a peer and
+	 * wasn't changed by the gossip of the same peer
+	 * @param key Key of the entry to start from (or -1)
+	 * @param peer Address of the peer
+	 * @return Key of the entry or -1 if there is no such entry
+	 */
+	private int findChange(int key, int peer) {
+		int sent = peer < this.sentVersions.length ?
+				this.sentVersions[peer] : 0;
+		while (key >= 0 && this.versions[key] > sent) {
+			if (this.sources[key] != peer) {
+				return key;
+			}
+			key = this.older[key];
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes an entry from the change order
+	 * @param key Key of the entry
+	 */
+	private void unlink(int key) {
+		int o = this.older[key];
+		int n = this.newer[key];
+		if (o >= 0) {
+			this.newer[o] = n;
+		}
+		if (n >= 0) {
+			this.older[n] = o;
+		}
+		else {
+			this.newest = o;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Interface for classes that want to be informed about malicious hosts
+ * that the hosts detect (see {@link ReputationTable}).
+ */
+public interface DetectionListener {
+
+	/**
+	 * Method is called when a host is found malicious for the first time
+	 * (by any host) during the simulation
+	 * @param host The malicious host
+	 * @param detector The host whose reputation table revealed the host
+	 */
+	public void maliciousHostFound(DTNHost host, DTNHost detector);
+}
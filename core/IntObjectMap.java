@@ -0,0 +1,242 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map from non-negative int keys to objects. Keys are stored as
+ * primitives in an open addressing table (linear probing), so looking up,
+ * adding and removing values doesn't create any objects. Null values are
+ * not supported.
+ */
+public class IntObjectMap<V> {
+	/** marker of an empty slot in the key table */
+	private static final int EMPTY = -1;
+	/** initial capacity of the table (must be a power of two) */
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	/** number of structural modifications (for detecting concurrent
+	 * modifications while iterating) */
+	private int modCount;
+	/** view of the values (created when first requested) */
+	private Collection<V> valueView;
+
+	/**
+	 * Creates a new empty map
+	 */
+	public IntObjectMap() {
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		this.mask = INITIAL_CAPACITY - 1;
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key (must not be negative)
+	 * @return The value or null if the key is not in the map
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V get(int key) {
+		for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V)values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the map contains a key
+	 * @param key The key (must not be negative)
+	 * @return True if the key is in the map
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key (must not be negative)
+	 * @param value The new value (must not be null)
+	 * @return The previous value of the key or null if there was none
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V put(int key, V value) {
+		assert key >= 0 && value != null : "Invalid key " + key +
+			" or value " + value;
+
+		int i = slot(key);
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V)values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		modCount++;
+		if (++size * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key to remove
+	 * @return The value of the removed key or null if the key was not in
+	 * the map
+	 */
+	@SuppressWarnings(value = "unchecked")
+	public V remove(int key) {
+		int i = slot(key);
+		for (; keys[i] != key; i = (i + 1) & mask) {
+			if (keys[i] == EMPTY) {
+				return null;
+			}
+		}
+
+		V old = (V)values[i];
+		/* shift the following entries of the probe sequence backwards so
+		 * that no removal markers are needed */
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		values[i] = null;
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return the number of keys in the map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes all keys from the map
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns a collection view of the values in the map. The view
+	 * changes when the map is modified and its iterators throw
+	 * ConcurrentModificationException if the map is modified while
+	 * iterating. The view doesn't support removing values. The values are
+	 * iterated in the order of the table slots.
+	 * @return The values of the map
+	 */
+	public Collection<V> values() {
+		if (this.valueView == null) {
+			this.valueView = new AbstractCollection<V>() {
+				public Iterator<V> iterator() {
+					return new ValueIterator();
+				}
+
+				public int size() {
+					return size;
+				}
+			};
+		}
+		return this.valueView;
+	}
+
+	/**
+	 * Returns the slot where the probe sequence of a key starts
+	 * @param key The key
+	 * @return Index of the slot
+	 */
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Moves all entries to a new table
+	 * @param capacity Size of the new table (must be a power of two)
+	 */
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, EMPTY);
+
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != EMPTY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the values of the map
+	 */
+	private class ValueIterator implements Iterator<V> {
+		/** index of the next slot to check */
+		private int next;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			checkModCount();
+			while (next < keys.length && keys[next] == EMPTY) {
+				next++;
+			}
+			return next < keys.length;
+		}
+
+		@SuppressWarnings(value = "unchecked")
+		public V next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return (V)values[next++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void checkModCount() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
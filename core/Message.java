@@ -28,6 +28,10 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Handles of all message IDs seen during this run (by ID) */
+	private static Map<String, Integer> handles;
+	/** Handle of this message's ID */
+	private int handle;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -69,6 +73,7 @@ public class Message implements Comparable<Message> {
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
+		this.handle = getHandle(id);
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -115,6 +120,45 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 	
+	/**
+	 * Returns an integer handle of the message's ID. The handle is the same
+	 * for all replicates of the message and the handles of different IDs are
+	 * given in order starting from zero (i.e., they can be used as indexes).
+	 * @return The handle
+	 */
+	public int getHandle() {
+		return this.handle;
+	}
+	
+	/**
+	 * Returns the handle of a message ID. A new handle is given for IDs that
+	 * haven't been seen before during this run, so lookups by ID should use
+	 * {@link #findHandle(String)} instead.
+	 * @param id The message ID
+	 * @return The handle of the ID
+	 * @see #getHandle()
+	 */
+	public static int getHandle(String id) {
+		Integer h = handles.get(id);
+		if (h == null) {
+			h = handles.size();
+			handles.put(id, h);
+		}
+		return h;
+	}
+	
+	/**
+	 * Returns the handle of a message ID without giving new handles.
+	 * @param id The message ID
+	 * @return The handle of the ID or -1 if the ID hasn't been seen during
+	 * this run (i.e., there is no message with the ID)
+	 * @see #getHandle(String)
+	 */
+	public static int findHandle(String id) {
+		Integer h = handles.get(id);
+		return h == null ? -1 : h;
+	}
+	
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -164,6 +208,19 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
+	/**
+	 * Returns the simulation time when the TTL of this message runs out
+	 * (i.e., the creation time plus the initial TTL)
+	 * @return The expiry time or Double.POSITIVE_INFINITY if the TTL is 
+	 * infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return this.timeCreated + this.initTtl * 60;
+	}
+	
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -344,6 +401,7 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		handles = new HashMap<String, Integer>();
 	}
 
 	/**
@@ -4,7 +4,6 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
@@ -21,6 +20,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static final String TRANSMIT_SPEED_S = "transmitSpeed";
 	/** scanning interval -setting id ({@value})*/
 	public static final String SCAN_INTERVAL_S = "scanInterval";
+	/** transfer slots -setting id ({@value}). Integer valued. Maximum
+	 * number of connections of the interface that can transfer a message
+	 * at the same time (if the router supports concurrent transfers, see
+	 * {@link routing.ActiveRouter#MULTI_TRANSFER_S}). Default = 1. */
+	public static final String TRANSFER_SLOTS_S = "transferSlots";
 	
 	/** {@link ModuleCommunicationBus} identifier for the "scanning interval" 
     variable. */
@@ -40,11 +44,18 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	protected String interfacetype;
 	protected List<Connection> connections; // connected hosts
+	/** connections by the address of the other interface */
+	private IntObjectMap<Connection> connectionTable;
 	private List<ConnectionListener> cListeners = null; // list of listeners
 	private int address; // network interface address
 	protected double transmitRange;
 	protected int transmitSpeed;
+	/** how many connections can transfer messages at the same time */
+	protected int transferSlots = 1;
 	protected ConnectivityOptimizer optimizer = null;
+	/** reusable list for the interfaces near this interface */
+	protected List<NetworkInterface> nearInterfaces = 
+		new ArrayList<NetworkInterface>();
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -69,6 +80,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public NetworkInterface(Settings s) {
 		this.interfacetype = s.getNameSpace();
 		this.connections = new ArrayList<Connection>();
+		this.connectionTable = new IntObjectMap<Connection>();
 		this.address = getNextNetAddress();
 
 		this.transmitRange = s.getDouble(TRANSMIT_RANGE_S);
@@ -80,6 +92,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		} else {
 			this.scanInterval = 0;
 		}
+		if (s.contains(TRANSFER_SLOTS_S)) {
+			this.transferSlots = s.getInt(TRANSFER_SLOTS_S);
+			if (this.transferSlots < 1) {
+				throw new SettingsError("Invalid value (" + transferSlots + 
+						") for setting " + TRANSFER_SLOTS_S);
+			}
+		}
 	}
 	
 	/**
@@ -88,6 +107,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public NetworkInterface() {
 		this.interfacetype = "Default";
 		this.connections = new ArrayList<Connection>();
+		this.connectionTable = new IntObjectMap<Connection>();
 		this.address = getNextNetAddress();
 	}
 	
@@ -96,12 +116,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface(NetworkInterface ni) {
 		this.connections = new ArrayList<Connection>();
+		this.connectionTable = new IntObjectMap<Connection>();
 		this.address = getNextNetAddress();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
 		this.interfacetype = ni.interfacetype;
 		this.transmitRange = ni.transmitRange;
 		this.transmitSpeed = ni.transmitSpeed;
+		this.transferSlots = ni.transferSlots;
 		
 		/* draw lastScanTime of [0 -- scanInterval] */
 		this.lastScanTime = rng.nextDouble() * scanInterval;
@@ -124,7 +146,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
+		optimizer = ConnectivityOptimizer.getOptimizer(
 				this.interfacetype.hashCode(), transmitRange);
 		optimizer.addInterface(this);		
 	}
@@ -178,12 +200,82 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 
 	/**
-	 * Returns a list of currently connected connections
+	 * Returns the maximum number of connections of this interface that can
+	 * transfer a message at the same time
+	 * @return the number of transfer slots
+	 */
+	public int getTransferSlots() {
+		return this.transferSlots;
+	}
+
+	/**
+	 * Returns true if less than {@link #getTransferSlots()} connections of
+	 * this interface are transferring a message at the moment
+	 * @return true if a new transfer can be started using this interface
+	 */
+	public boolean hasFreeTransferSlot() {
+		int busy = 0;
+		for (int i=0, n=this.connections.size(); i<n; i++) {
+			if (this.connections.get(i).getMessage() != null &&
+					++busy >= this.transferSlots) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a list of currently connected connections. The list must not
+	 * be modified directly; use {@link #addConnection(Connection, 
+	 * NetworkInterface)} and {@link #removeConnection(Connection, 
+	 * NetworkInterface)} instead.
 	 * @return a list of currently connected connections
 	 */
 	public List<Connection> getConnections() {
 		return this.connections;
 	}
+
+	/**
+	 * Returns the connection to another interface
+	 * @param anotherInterface The other interface
+	 * @return The connection or null if the interfaces are not connected
+	 */
+	public Connection getConnection(NetworkInterface anotherInterface) {
+		return this.connectionTable.get(anotherInterface.getAddress());
+	}
+
+	/**
+	 * Adds a connection to the connections of this interface
+	 * @param con The connection to add
+	 * @param anotherInterface The interface at the other end of the 
+	 * connection
+	 */
+	protected void addConnection(Connection con, 
+			NetworkInterface anotherInterface) {
+		this.connections.add(con);
+		this.connectionTable.put(anotherInterface.getAddress(), con);
+		this.host.connectionsChanged();
+	}
+
+	/**
+	 * Removes a connection from the connections of this interface
+	 * @param con The connection to remove
+	 * @param anotherInterface The interface at the other end of the 
+	 * connection
+	 * @return True if the connection was removed, false if this interface
+	 * didn't have the connection
+	 */
+	protected boolean removeConnection(Connection con, 
+			NetworkInterface anotherInterface) {
+		if (!this.connections.remove(con)) {
+			return false;
+		}
+		if (this.connectionTable.get(anotherInterface.getAddress()) == con) {
+			this.connectionTable.remove(anotherInterface.getAddress());
+		}
+		this.host.connectionsChanged();
+		return true;
+	}
 	
 	/**
 	 * Checks if this interface is currently in the scanning mode
@@ -208,6 +300,20 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return true;
 	}
 
+	/**
+	 * Returns the next simulation time when updating this interface may
+	 * change its state if the hosts don't move. This implementation returns
+	 * the start time of the next scanning round, or 
+	 * Double.POSITIVE_INFINITY if the interface is always scanning.
+	 * @return The next time when this interface needs to be updated
+	 */
+	public double getNextEventTime() {
+		if (scanInterval > 0.0) {
+			return Math.max(lastScanTime + scanInterval, SimClock.getTime());
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/**
 	 * Connects the interface to another interface.
 	 * 
@@ -227,11 +333,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
 
-		this.connections.add(con);
+		addConnection(con, anotherInterface);
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
 		// set up bidirectional connection
-		anotherInterface.getConnections().add(con);
+		anotherInterface.addConnection(con, this);
            
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -249,7 +355,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
 		// tear down bidirectional connection
-		if (!anotherInterface.getConnections().remove(con)) {
+		if (!anotherInterface.removeConnection(con, this)) {
 			throw new SimError("No connection " + con + " found in " +
 					anotherInterface);	
 		}
@@ -274,6 +380,35 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.host.getLocation().distance(
 				anotherInterface.getHost().getLocation()) <= smallerRange;
 	}
+
+	/**
+	 * Returns true if the host of this interface has blacklisted the host of
+	 * another interface or the other way round (see
+	 * {@link ReputationTable#isBlacklisted(DTNHost)}). Interfaces don't
+	 * connect such hosts and tear down the existing connections between them.
+	 * @param anotherInterface The another interface
+	 * @return True if either of the hosts is blacklisted by the other one
+	 */
+	protected boolean isBlacklisted(NetworkInterface anotherInterface) {
+		DTNHost other = anotherInterface.getHost();
+		return this.host.reputations.isBlacklisted(other) ||
+				other.reputations.isBlacklisted(this.host);
+	}
+
+	/**
+	 * Returns true if some connection of this interface is between hosts
+	 * that have been blacklisted after the connection was set up
+	 * (see {@link #isBlacklisted(NetworkInterface)})
+	 * @return True if some connection should be torn down
+	 */
+	protected boolean hasBlacklistedConnection() {
+		for (Connection con : this.connections) {
+			if (isBlacklisted(con.getOtherInterface(this))) {
+				return true;
+			}
+		}
+		return false;
+	}
 	
 	/**
 	 * Returns true if the given NetworkInterface is connected to this host. 
@@ -281,13 +416,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the two hosts are connected
 	 */
 	protected boolean isConnected(NetworkInterface netinterface) {
-		for (int i = 0; i < this.connections.size(); i++) {
-			if (this.connections.get(i).getOtherInterface(this) == 
-				netinterface) {
-				return true;
-			}
-		}
-		return false;
+		return getConnection(netinterface) != null;
 	}
 	
 	/**
@@ -309,6 +438,18 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Prepares the interface for the next {@link #update()} call by doing the
+	 * work that doesn't depend on the other interfaces' state (e.g., 
+	 * computing the interface's new location in the connectivity optimizer).
+	 * Different interfaces can be prepared concurrently.
+	 */
+	public void prepareUpdate() {
+		if (optimizer != null) {
+			optimizer.prepareLocation(this);
+		}
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
@@ -347,6 +488,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;	
+			if (optimizer != null) {
+				optimizer.updateRange(this);
+			}
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -390,7 +534,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		notifyConnectionListeners(CON_DOWN, anotherNode);
 
 		// tear down bidirectional connection
-		if (!anotherInterface.getConnections().remove(con)) {
+		if (!anotherInterface.removeConnection(con, this)) {
 			throw new SimError("No connection " + con + " found in " +
 					anotherNode);   
 		}
@@ -398,7 +542,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host.connectionDown(con);
 		anotherNode.connectionDown(con);
 
-		connections.remove(index);
+		removeConnection(con, anotherInterface);
 	}
 
 	/**
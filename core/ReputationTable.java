@@ -0,0 +1,310 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reputations of other hosts as seen by one host, used for detecting
+ * malicious hosts. For every host that has taken part in a transfer the
+ * table counts how many messages the host has forwarded (sent) and
+ * received. When the counts of a host are updated and the host has taken
+ * part in at least the sum threshold of transfers but its ratio of
+ * forwarded to received messages is at most the ratio threshold, the host
+ * is suspected once more. The values are stored in primitive arrays
+ * indexed by the address of the host they are for.
+ * <P>A host is blacklisted when its suspicions reach its own
+ * {@link DTNHost#counter}, i.e., the host of the table doesn't connect to
+ * it anymore (see {@link #isBlacklisted(DTNHost)}). The hosts that have been
+ * blacklisted since the previous check can be asked with
+ * {@link #nextNewlyBlacklisted(int)}.</P>
+ * <P>Hosts share their suspicions when they meet (see 
+ * {@link #receiveSuspicions(ReputationTable, DTNHost, DTNHost)}). Only the
+ * suspicions that have changed since the previous exchange are shared.</P>
+ */
+public class ReputationTable {
+	/** initial capacity of the tables */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** how many messages the hosts have forwarded, by host address */
+	private int[] forwarded;
+	/** how many messages the hosts have received, by host address */
+	private int[] received;
+	/** how many times the hosts have been suspected, by host address */
+	private int[] suspicions;
+	/** the hosts of the entries */
+	private DTNHost[] hosts;
+	/** addresses of the hosts that have forwarding counts */
+	private BitSet known;
+	/** addresses of the hosts that have been suspected at least once */
+	private BitSet suspects;
+	/** addresses of the hosts that have been suspected at least as many
+	 * times as their counter is */
+	private BitSet blacklist;
+	/** addresses of the hosts that have been blacklisted since the last
+	 * {@link #clearNewlyBlacklisted()} call */
+	private BitSet newlyBlacklisted;
+	/** maximum forwarding ratio of a suspected host */
+	private double ratioThreshold;
+	/** minimum number of transfers of a suspected host */
+	private double sumThreshold;
+	/** changes of the suspicions that haven't been shared yet */
+	private DeltaGossip gossip;
+
+	/**
+	 * Constructor. Creates an empty table.
+	 * @param ratioThreshold Maximum ratio of forwarded to received messages
+	 * of a host that is suspected
+	 * @param sumThreshold Minimum number of forwarded and received messages
+	 * of a host that is suspected
+	 */
+	public ReputationTable(double ratioThreshold, double sumThreshold) {
+		this.forwarded = new int[INITIAL_CAPACITY];
+		this.received = new int[INITIAL_CAPACITY];
+		this.suspicions = new int[INITIAL_CAPACITY];
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.known = new BitSet();
+		this.suspects = new BitSet();
+		this.blacklist = new BitSet();
+		this.newlyBlacklisted = new BitSet();
+		this.ratioThreshold = ratioThreshold;
+		this.sumThreshold = sumThreshold;
+		this.gossip = new DeltaGossip();
+	}
+
+	/**
+	 * Updates the counts of the hosts of a transfer and suspects them if
+	 * their counts cross the thresholds
+	 * @param from The host that forwarded the message
+	 * @param to The host that received the message
+	 */
+	public void transferred(DTNHost from, DTNHost to) {
+		int address = from.getAddress();
+		if (add(from)) {
+			this.forwarded[address] = 1;
+		}
+		else {
+			this.forwarded[address]++;
+			checkThresholds(address);
+		}
+
+		address = to.getAddress();
+		if (add(to)) {
+			this.received[address] = 1;
+		}
+		else {
+			this.received[address]++;
+			checkThresholds(address);
+		}
+	}
+
+	/**
+	 * Suspects a host once more
+	 * @param host The host
+	 */
+	public void suspect(DTNHost host) {
+		int address = host.getAddress();
+		ensureCapacity(address);
+		this.hosts[address] = host;
+		suspected(address);
+		this.gossip.changed(address);
+	}
+
+	/**
+	 * Suspects once more every host whose suspicions in another host's 
+	 * table have changed since the previous time the other host's table 
+	 * was shared with this host (excluding the changes this host caused).
+	 * @param other The table of the other host
+	 * @param host The host of this table
+	 * @param otherHost The host of the other table
+	 */
+	public void receiveSuspicions(ReputationTable other, DTNHost host,
+			DTNHost otherHost) {
+		int to = host.getAddress();
+		int from = otherHost.getAddress();
+		DeltaGossip g = other.gossip;
+
+		for (int i = g.firstChange(to); i >= 0; i = g.nextChange(to, i)) {
+			ensureCapacity(i);
+			this.hosts[i] = other.hosts[i];
+			suspected(i);
+			this.gossip.changed(i, from);
+		}
+		g.sent(to);
+	}
+
+	/**
+	 * Returns how many messages a host has forwarded
+	 * @param host The host
+	 * @return The number of forwarded messages
+	 */
+	public int getForwarded(DTNHost host) {
+		int address = host.getAddress();
+		return this.known.get(address) ? this.forwarded[address] : 0;
+	}
+
+	/**
+	 * Returns how many messages a host has received
+	 * @param host The host
+	 * @return The number of received messages
+	 */
+	public int getReceived(DTNHost host) {
+		int address = host.getAddress();
+		return this.known.get(address) ? this.received[address] : 0;
+	}
+
+	/**
+	 * Returns the ratio of forwarded to received messages of a host
+	 * @param host The host
+	 * @return The ratio or Double.POSITIVE_INFINITY if the host hasn't
+	 * received any messages
+	 */
+	public double getRatio(DTNHost host) {
+		return getRatio(host.getAddress());
+	}
+
+	/**
+	 * Returns how many times a host has been suspected
+	 * @param host The host
+	 * @return The number of suspicions
+	 */
+	public int getSuspicions(DTNHost host) {
+		return getSuspicions(host.getAddress());
+	}
+
+	/**
+	 * Returns how many times the host with the given address has been
+	 * suspected
+	 * @param address Address of the host
+	 * @return The number of suspicions
+	 */
+	public int getSuspicions(int address) {
+		return this.suspects.get(address) ? this.suspicions[address] : 0;
+	}
+
+	/**
+	 * Returns true if a host has been suspected at least as many times as
+	 * its counter is. The check takes constant time.
+	 * @param host The host
+	 * @return True if the host is blacklisted
+	 */
+	public boolean isBlacklisted(DTNHost host) {
+		return this.blacklist.get(host.getAddress());
+	}
+
+	/**
+	 * Returns the first address of a suspected host, starting from the
+	 * given address. Together with {@link #getHost(int)} and
+	 * {@link #getSuspicions(int)} this can be used to iterate through all
+	 * the suspected hosts:<BR>
+	 * <CODE>for (int i = t.nextSuspect(0); i >= 0; i = t.nextSuspect(i+1))
+	 * </CODE>
+	 * @param fromAddress The address to start from
+	 * @return The next address or -1 if there are no more suspected hosts
+	 */
+	public int nextSuspect(int fromAddress) {
+		return this.suspects.nextSetBit(fromAddress);
+	}
+
+	/**
+	 * Returns the first address of a host that has been blacklisted since
+	 * the previous {@link #clearNewlyBlacklisted()} call, starting from the
+	 * given address. The hosts can be iterated like with
+	 * {@link #nextSuspect(int)}.
+	 * @param fromAddress The address to start from
+	 * @return The next address or -1 if there are no more newly blacklisted
+	 * hosts
+	 */
+	public int nextNewlyBlacklisted(int fromAddress) {
+		return this.newlyBlacklisted.nextSetBit(fromAddress);
+	}
+
+	/**
+	 * Forgets the newly blacklisted hosts, i.e., the hosts blacklisted 
+	 * before this call aren't returned by {@link #nextNewlyBlacklisted(int)}
+	 * anymore
+	 */
+	public void clearNewlyBlacklisted() {
+		this.newlyBlacklisted.clear();
+	}
+
+	/**
+	 * Returns the host of a known or suspected address
+	 * @param address The address
+	 * @return The host
+	 */
+	public DTNHost getHost(int address) {
+		return this.hosts[address];
+	}
+
+	/**
+	 * Adds a host to the known hosts if it isn't known yet
+	 * @param host The host
+	 * @return True if the host was added, false if it was known already
+	 */
+	private boolean add(DTNHost host) {
+		int address = host.getAddress();
+		if (this.known.get(address)) {
+			return false;
+		}
+		ensureCapacity(address);
+		this.hosts[address] = host;
+		this.forwarded[address] = 0;
+		this.received[address] = 0;
+		this.known.set(address);
+		return true;
+	}
+
+	/**
+	 * Suspects a host if its counts cross the thresholds
+	 * @param address Address of the host
+	 */
+	private void checkThresholds(int address) {
+		if (getRatio(address) <= this.ratioThreshold &&
+				this.forwarded[address] + this.received[address] >=
+				this.sumThreshold) {
+			suspected(address);
+			this.gossip.changed(address);
+		}
+	}
+
+	/**
+	 * Increases the suspicions of a host and blacklists the host if its
+	 * suspicions reach its counter
+	 * @param address Address of the host
+	 */
+	private void suspected(int address) {
+		this.suspicions[address]++;
+		this.suspects.set(address);
+		if (this.suspicions[address] >= this.hosts[address].counter &&
+				!this.blacklist.get(address)) {
+			this.blacklist.set(address);
+			this.newlyBlacklisted.set(address);
+		}
+	}
+
+	private double getRatio(int address) {
+		if (!this.known.get(address) || this.received[address] == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return (double)this.forwarded[address] / this.received[address];
+	}
+
+	/**
+	 * Makes sure the tables are big enough for the given address
+	 * @param address The address
+	 */
+	private void ensureCapacity(int address) {
+		if (address < this.forwarded.length) {
+			return;
+		}
+		int capacity = Math.max(this.forwarded.length * 2, address + 1);
+		this.forwarded = Arrays.copyOf(this.forwarded, capacity);
+		this.received = Arrays.copyOf(this.received, capacity);
+		this.suspicions = Arrays.copyOf(this.suspicions, capacity);
+		this.hosts = Arrays.copyOf(this.hosts, capacity);
+	}
+}
@@ -12,6 +12,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import misbehaviour.MisbehaviourModel;
 import movement.MapBasedMovement;
 import movement.MovementModel;
 import movement.map.SimMap;
@@ -73,6 +74,8 @@ public class SimScenario implements Serializable {
 	public static final String INTERFACENAME_S = "interface";
 	/** application name in the group -setting id ({@value})*/
 	public static final String GAPPNAME_S = "application";
+	/** misbehaviour model namespace in the group -setting id ({@value})*/
+	public static final String MISBEHAVIOUR_S = "misbehaviour";
 
 	/** package where to look for movement models */
 	private static final String MM_PACKAGE = "movement.";
@@ -85,6 +88,9 @@ public class SimScenario implements Serializable {
 	/** package where to look for application classes */
 	private static final String APP_PACKAGE = "applications.";
 	
+	/** package where to look for misbehaviour models */
+	private static final String MISBEHAVIOUR_PACKAGE = "misbehaviour.";
+	
 	/** The world instance */
 	private World world;
 	/** List of hosts in this simulation */
@@ -120,6 +126,8 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Global malicious host detection event listeners */
+	private List<DetectionListener> detectionListeners;
 
 	static {DTNSim.registerForReset(SimScenario.class.getCanonicalName());
 		reset();
@@ -153,6 +161,7 @@ public class SimScenario implements Serializable {
 		this.movementListeners = new ArrayList<MovementListener>();
 		this.updateListeners = new ArrayList<UpdateListener>();
 		this.appListeners = new ArrayList<ApplicationListener>();
+		this.detectionListeners = new ArrayList<DetectionListener>();
 		this.eqHandler = new EventQueueHandler();
 
 		/* TODO: check size from movement models */
@@ -321,6 +330,14 @@ public class SimScenario implements Serializable {
 		return this.appListeners;
 	}
 	
+	/** 
+	 * Adds a new malicious host detection event listener for all nodes.
+	 * @param dl The listener
+	 */
+	public void addDetectionListener(DetectionListener dl) {
+		this.detectionListeners.add(dl);
+	}
+	
 	/**
 	 * Creates hosts for the scenario
 	 */
@@ -390,6 +407,15 @@ public class SimScenario implements Serializable {
 				}
 			}
 
+			// setup misbehaviour
+			MisbehaviourModel mbProto = null;
+			if (s.contains(MISBEHAVIOUR_S)) {
+				Settings t = new Settings(s.getSetting(MISBEHAVIOUR_S));
+				mbProto = (MisbehaviourModel)t.createIntializedObject(
+						MISBEHAVIOUR_PACKAGE + 
+						t.getSetting(MisbehaviourModel.TYPE_S));
+			}
+
 			if (mmProto instanceof MapBasedMovement) {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
@@ -403,6 +429,10 @@ public class SimScenario implements Serializable {
 				DTNHost host = new DTNHost(this.messageListeners, 
 						this.movementListeners,	gid, mmNetInterfaces, comBus, 
 						mmProto, mRouterProto);
+				host.setDetectionListeners(this.detectionListeners);
+				if (mbProto != null && mbProto.isMember(host.getAddress())) {
+					host.setMisbehaviour(mbProto.replicate());
+				}
 				hosts.add(host);
 			}
 		}
@@ -37,6 +37,16 @@ public class Tuple<K,V>  {
 		return value;
 	}
 	
+	/**
+	 * Sets both the key and the value, so that the tuple can be reused
+	 * @param key The new key
+	 * @param value The new value
+	 */
+	public void set(K key, V value) {
+		this.key = key;
+		this.value = value;
+	}
+	
 	/**
 	 * Returns a string representation of the tuple
 	 * @return a string representation of the tuple
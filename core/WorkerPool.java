@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size pool of worker threads that runs index based tasks in parallel.
+ * The index range is split into contiguous blocks, one block per worker, and
+ * the calling thread waits until all blocks are done. If the pool has only
+ * one worker, tasks are run in the calling thread. Idle worker threads are
+ * stopped after {@link #KEEP_ALIVE} seconds, so pools that are no longer
+ * used don't need to be shut down explicitly.
+ */
+public class WorkerPool {
+	/** Task that is run once for every index of the range */
+	public interface Task {
+		/**
+		 * Runs the task for one index
+		 * @param index The index to run the task for
+		 */
+		public void run(int index);
+	}
+
+	/** how long (seconds) idle worker threads are kept alive ({@value}) */
+	public static final int KEEP_ALIVE = 60;
+
+	private int nrofWorkers;
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Creates a new worker pool
+	 * @param nrofWorkers How many worker threads to use (if less than one,
+	 * the number of available processors is used)
+	 */
+	public WorkerPool(int nrofWorkers) {
+		if (nrofWorkers < 1) {
+			nrofWorkers = Runtime.getRuntime().availableProcessors();
+		}
+		this.nrofWorkers = nrofWorkers;
+
+		if (nrofWorkers > 1) {
+			this.executor = new ThreadPoolExecutor(nrofWorkers, nrofWorkers,
+					KEEP_ALIVE, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ONE-worker");
+					t.setDaemon(true); // don't prevent the VM from exiting
+					return t;
+				}
+			});
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	/**
+	 * Returns the number of workers in this pool
+	 * @return the number of workers in this pool
+	 */
+	public int getNrofWorkers() {
+		return this.nrofWorkers;
+	}
+
+	/**
+	 * Runs the task for all indexes from 0 (inclusive) to n (exclusive) and
+	 * returns when all of them are done. The order in which the indexes are
+	 * processed is undefined, so the task must not depend on it.
+	 * @param n The size of the index range
+	 * @param task The task to run
+	 * @throws SimError if the task threw an exception
+	 */
+	public void forEach(int n, final Task task) {
+		if (this.executor == null || n < 2) {
+			for (int i=0; i<n; i++) {
+				task.run(i);
+			}
+			return;
+		}
+
+		int nrofBlocks = Math.min(this.nrofWorkers, n);
+		List<Future<Object>> results = new ArrayList<Future<Object>>(
+				nrofBlocks);
+
+		for (int b=0; b<nrofBlocks; b++) {
+			final int start = (int)((long)n * b / nrofBlocks);
+			final int end = (int)((long)n * (b+1) / nrofBlocks);
+			results.add(executor.submit(new Callable<Object>() {
+				public Object call() {
+					for (int i=start; i<end; i++) {
+						task.run(i);
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Object> f : results) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				throw new SimError("Interrupted while waiting for workers", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new SimError("Worker failed: " + cause, e);
+			}
+		}
+	}
+
+	/**
+	 * Stops all the worker threads. The pool can't be used after this.
+	 */
+	public void shutdown() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+}
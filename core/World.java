@@ -5,11 +5,13 @@
 package core;
 
 import input.EventQueue;
+import input.EventQueueMultiplexer;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -31,17 +33,100 @@ public class World {
 	 * @see ConnectivityGrid
 	 */
 	public static final String CELL_SIZE_MULT_S = "cellSizeMult";
+	/**
+	 * Connectivity optimizer -setting id ({@value}). Name of the
+	 * {@link interfaces.ConnectivityOptimizer} implementation that finds the
+	 * interfaces that are close enough to be connected: 
+	 * <CODE>ConnectivityGrid</CODE> (searches the cells around every 
+	 * interface separately), <CODE>PairwiseConnectivityGrid</CODE> (tests
+	 * every pair of nearby interfaces once per update in a single sweep),
+	 * <CODE>MultiLevelConnectivityGrid</CODE> (puts the interfaces on grids
+	 * of different cell sizes based on their transmit ranges) or
+	 * <CODE>PredictiveConnectivityGrid</CODE> (predicts when nearby
+	 * interfaces get within range from the destinations and speeds of their
+	 * hosts).
+	 * Default is {@link #DEF_CONNECTIVITY_OPTIMIZER}.
+	 */
+	public static final String CONNECTIVITY_OPTIMIZER_S = 
+		"connectivityOptimizer";
 	/**
 	 * Should the order of node updates be different (random) within every 
 	 * update step -setting id ({@value}). Boolean (true/false) variable. 
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the host updates be split into a parallel preparation phase
+	 * and a serial commit phase -setting id ({@value}). Boolean (true/false)
+	 * variable. The preparation phase only refreshes the location data of 
+	 * the network interfaces; connections and routers are still updated 
+	 * one host at a time in the same (possibly randomized) order, so the
+	 * results are the same as with serial updates.
+	 * Default is {@link #DEF_PARALLEL_UPDATES}.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Should the hosts that stay on their current path segment be moved in 
+	 * parallel -setting id ({@value}). Boolean (true/false) variable. Hosts
+	 * that reach a waypoint (and may ask their movement models for new paths)
+	 * are still moved one at a time in address order, so the movement models'
+	 * random number generator and control systems see the same calls as 
+	 * with serial movement. Default is {@link #DEF_PARALLEL_MOVEMENT}.
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+	/**
+	 * Should the update intervals where nothing can happen be skipped 
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, 
+	 * before every update the world computes the earliest time when an 
+	 * event is due or some host needs an update (see 
+	 * {@link DTNHost#getNextEventTime()}) and advances the clock directly
+	 * to the last update interval before that. Update listeners are not
+	 * informed about the skipped intervals. Default is 
+	 * {@link #DEF_SKIP_IDLE_INTERVALS}.
+	 */
+	public static final String SKIP_IDLE_INTERVALS_S = "skipIdleIntervals";
+	/**
+	 * Should only the hosts that an external event touched be updated after
+	 * the event -setting id ({@value}). Boolean (true/false) variable. If 
+	 * true, events that report the hosts they touched (see 
+	 * {@link #markDirty(DTNHost)}) cause an update of only the hosts that
+	 * are connected (directly or through other hosts) to the touched hosts 
+	 * and the hosts that would change their state in an update anyway (see
+	 * {@link DTNHost#getNextUpdateTime()}), together with the hosts 
+	 * connected to them. Events that don't report any hosts, and events at 
+	 * a time when some host's activeness may change, still cause an update
+	 * of all hosts. Updates at the end of every update interval always 
+	 * update all hosts, so the results are the same as without tracking. 
+	 * Default is {@link #DEF_TRACK_DIRTY_HOSTS}.
+	 */
+	public static final String TRACK_DIRTY_HOSTS_S = "trackDirtyHosts";
+	/**
+	 * Number of worker threads used by the parallel phases -setting id
+	 * ({@value}). Integer value; zero or less means the number of available
+	 * processors. Default is {@link #DEF_NROF_THREADS}.
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
+	/** default value for the connectivity optimizer ({@value}) */
+	public static final String DEF_CONNECTIVITY_OPTIMIZER = "ConnectivityGrid";
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the host updates have a parallel phase -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_PARALLEL_UPDATES = false;
+	/** should the hosts be moved in parallel -setting's default value 
+	 * ({@value}) */
+	public static final boolean DEF_PARALLEL_MOVEMENT = false;
+	/** should idle update intervals be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_SKIP_IDLE_INTERVALS = false;
+	/** should only touched hosts be updated after events -setting's default 
+	 * value ({@value}) */
+	public static final boolean DEF_TRACK_DIRTY_HOSTS = false;
+	/** default value for the number of worker threads ({@value}) */
+	public static final int DEF_NROF_THREADS = 0;
 
 	private int sizeX;
 	private int sizeY;
@@ -61,6 +146,36 @@ public class World {
 	private List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
+	/** Keeps track of the queue that has the next event */
+	private EventQueueMultiplexer queueMultiplexer;
+
+	/** should idle update intervals be skipped */
+	private boolean skipIdleIntervals;
+	/** simulation end time; idle intervals are not skipped past it */
+	private double endTime;
+
+	/** hosts (by address) connected to the hosts touched by the current 
+	 * event (null if dirty hosts are not tracked) */
+	private boolean[] dirtyHosts;
+	/** work stack for marking connected hosts dirty */
+	private int[] dirtyStack;
+	/** has the current event marked any hosts dirty */
+	private boolean hasDirtyHosts;
+
+	/** workers for the parallel phases (null if everything is serial) */
+	private WorkerPool workers;
+	/** prepares one host for the commit phase of the update (null if updates
+	 * are serial) */
+	private WorkerPool.Task prepareTask;
+	/** moves one host along its current path segment (null if movement is
+	 * serial) */
+	private WorkerPool.Task moveTask;
+	/** how long the hosts are moved by {@link #moveTask} */
+	private double moveIncrement;
+	/** is the host (by address) active during the current move */
+	private boolean[] moveActive;
+	/** was the host (by address) moved by the parallel movement phase */
+	private boolean[] moveDone;
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
@@ -83,6 +198,12 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;		
 
+		/* scheduled updates first so that they win ties like before */
+		List<EventQueue> allQueues = new ArrayList<EventQueue>();
+		allQueues.add(scheduledUpdates);
+		allQueues.addAll(eventQueues);
+		this.queueMultiplexer = new EventQueueMultiplexer(allQueues);
+
 		setNextEventQueue();
 		initSettings();
 	}
@@ -112,6 +233,70 @@ public class World {
 			conCellSizeMult = DEF_CON_CELL_SIZE_MULT;
 		}
 
+		this.skipIdleIntervals = DEF_SKIP_IDLE_INTERVALS;
+		if (s.contains(SKIP_IDLE_INTERVALS_S)) {
+			this.skipIdleIntervals = s.getBoolean(SKIP_IDLE_INTERVALS_S);
+		}
+		if (this.skipIdleIntervals) {
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+		}
+
+		boolean trackDirtyHosts = DEF_TRACK_DIRTY_HOSTS;
+		if (s.contains(TRACK_DIRTY_HOSTS_S)) {
+			trackDirtyHosts = s.getBoolean(TRACK_DIRTY_HOSTS_S);
+		}
+		if (trackDirtyHosts) {
+			this.dirtyHosts = new boolean[hosts.size()];
+			this.dirtyStack = new int[hosts.size()];
+		}
+		this.hasDirtyHosts = false;
+
+		boolean parallelUpdates = DEF_PARALLEL_UPDATES;
+		if (s.contains(PARALLEL_UPDATES_S)) {
+			parallelUpdates = s.getBoolean(PARALLEL_UPDATES_S);
+		}
+		boolean parallelMovement = DEF_PARALLEL_MOVEMENT;
+		if (s.contains(PARALLEL_MOVEMENT_S)) {
+			parallelMovement = s.getBoolean(PARALLEL_MOVEMENT_S);
+		}
+
+		if (parallelUpdates || parallelMovement) {
+			int nrofThreads = DEF_NROF_THREADS;
+			if (s.contains(NROF_THREADS_S)) {
+				nrofThreads = s.getInt(NROF_THREADS_S);
+			}
+			this.workers = new WorkerPool(nrofThreads);
+		}
+		else {
+			this.workers = null;
+		}
+
+		if (parallelUpdates) {
+			this.prepareTask = new WorkerPool.Task() {
+				public void run(int index) {
+					hosts.get(index).prepareUpdate(simulateConnections);
+				}
+			};
+		}
+		if (parallelMovement) {
+			this.moveActive = new boolean[hosts.size()];
+			this.moveDone = new boolean[hosts.size()];
+			this.moveTask = new WorkerPool.Task() {
+				public void run(int index) {
+					DTNHost host = hosts.get(index);
+					if (moveActive[index]) {
+						moveDone[index] =
+							host.moveTowardsDestination(moveIncrement);
+					}
+					else {
+						host.skipMove(moveIncrement);
+						moveDone[index] = true;
+					}
+				}
+			};
+		}
+
 		// check that values are within limits
 		if (conCellSizeMult < 2) {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
@@ -142,23 +327,11 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Sets the event queue that has the next event.
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.nextEventQueue = queueMultiplexer.getNextQueue();
+		this.nextQueueEventTime = queueMultiplexer.getNextEventsTime();
 	}
 
 	/** 
@@ -167,16 +340,26 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
-
 		setNextEventQueue();
 
+		if (this.skipIdleIntervals) {
+			skipIdleIntervals();
+		}
+
+		double runUntil = SimClock.getTime() + this.updateInterval;
+
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			queueMultiplexer.update(this.nextEventQueue);
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (this.hasDirtyHosts) {
+				updateDirtyHosts();
+			}
+			else {
+				updateHosts(); // update all hosts after every event
+			}
 			setNextEventQueue();
 		}
 
@@ -191,12 +374,46 @@ public class World {
 		}
 	}
 
+	/**
+	 * Advances the simulation clock over all the update intervals that end
+	 * before the next event or the next time some host needs an update. The
+	 * clock is advanced one interval at a time so that it has exactly the 
+	 * same value as if the intervals were run, and the (randomized) update
+	 * order is shuffled as it would have been on every skipped interval.
+	 */
+	private void skipIdleIntervals() {
+		double time = SimClock.getTime();
+		double next = Math.min(this.nextQueueEventTime, this.endTime);
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			if (next <= time + this.updateInterval) {
+				return; // nothing to skip
+			}
+			next = Math.min(next, hosts.get(i).getNextEventTime());
+		}
+
+		while (time + this.updateInterval < next) {
+			time += this.updateInterval;
+			if (this.updateOrder != null) {
+				simClock.setTime(time);
+				shuffleUpdateOrder();
+			}
+		}
+		simClock.setTime(time);
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
-	 * are made in random order.
+	 * are made in random order. If parallel updates are on, all hosts are
+	 * first prepared concurrently and then updated in the same order as
+	 * without the parallel phase.
 	 */
 	private void updateHosts() {
+		if (this.prepareTask != null) {
+			this.workers.forEach(hosts.size(), this.prepareTask);
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -206,10 +423,7 @@ public class World {
 			}
 		}
 		else { // update order randomizing is on
-			assert this.updateOrder.size() == this.hosts.size() : 
-				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
+			shuffleUpdateOrder();
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
@@ -219,17 +433,151 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates the hosts that were marked dirty by the last event and the 
+	 * hosts whose update may change their state at this time, in the same 
+	 * order {@link #updateHosts()} would update them. Since hosts don't move
+	 * between the events, an update can only affect the hosts that are 
+	 * connected to the updated host, so all hosts connected to a host that
+	 * is updated for its own sake are marked dirty too (both before and 
+	 * after the update, which may change the connections). If the activeness
+	 * of any host may change at this time, all hosts are updated (hosts that
+	 * become active may connect to any host within range).
+	 */
+	private void updateDirtyHosts() {
+		double now = SimClock.getTime();
+		List<DTNHost> order = this.updateOrder;
+
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			if (hosts.get(i).getNextActivenessChange() <= now) {
+				clearDirtyHosts();
+				updateHosts();
+				return;
+			}
+		}
+
+		if (order == null) { // randomizing is off
+			order = hosts;
+		}
+		else {
+			shuffleUpdateOrder();
+		}
+
+		for (int i=0, n = order.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			DTNHost host = order.get(i);
+			if (this.dirtyHosts[host.getAddress()]) {
+				host.update(simulateConnections);
+			}
+			else if (host.getNextUpdateTime() <= now) {
+				markDirty(host);
+				host.update(simulateConnections);
+			}
+			else {
+				continue;
+			}
+			markDirty(host); // connections may have changed
+
+		}
+
+		clearDirtyHosts();
+	}
+
+	/**
+	 * Marks a host and all the hosts that are currently connected to it 
+	 * (directly or through other hosts) to be updated after the event that
+	 * is being processed. Events that don't mark any hosts cause an update
+	 * of all hosts. Does nothing if dirty hosts are not tracked.
+	 * @param host The host that the event touched
+	 */
+	public void markDirty(DTNHost host) {
+		if (this.dirtyHosts == null) {
+			return;
+		}
+
+		/* all hosts connected to a dirty host are already dirty, except for
+		 * the new connections of the given host */
+		int stackSize = 0;
+		this.dirtyHosts[host.getAddress()] = true;
+		this.dirtyStack[stackSize++] = host.getAddress();
+
+		while (stackSize > 0) {
+			DTNHost next = hosts.get(this.dirtyStack[--stackSize]);
+			for (NetworkInterface ni : next.getInterfaces()) {
+				for (Connection con : ni.getConnections()) {
+					int peer = con.getOtherNode(next).getAddress();
+					if (!this.dirtyHosts[peer]) {
+						this.dirtyHosts[peer] = true;
+						this.dirtyStack[stackSize++] = peer;
+					}
+				}
+			}
+		}
+		this.hasDirtyHosts = true;
+	}
+
+	/**
+	 * Clears all the dirty marks
+	 */
+	private void clearDirtyHosts() {
+		Arrays.fill(this.dirtyHosts, false);
+		this.hasDirtyHosts = false;
+	}
+
+	/**
+	 * Shuffles the update order using the current simulation time as the 
+	 * seed. The order is shuffled in place, so every shuffle depends on all
+	 * the previous ones.
+	 */
+	private void shuffleUpdateOrder() {
+		assert this.updateOrder.size() == this.hosts.size() : 
+			"Nrof hosts has changed unexpectedly";
+		Random rng = new Random(SimClock.getIntTime());
+		Collections.shuffle(this.updateOrder, rng); 
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.moveTask != null) {
+			moveHostsInParallel(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
 
+	/**
+	 * Moves all hosts in the world for a given amount of time using the
+	 * worker pool. Activeness is checked serially first (activeness handlers
+	 * may be shared by a group), then all hosts that stay on their current 
+	 * path segment are moved in parallel, and finally the rest of the hosts
+	 * are moved serially in address order.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(double timeIncrement) {
+		int n = hosts.size();
+		for (int i=0; i<n; i++) {
+			this.moveActive[i] = hosts.get(i).isActive();
+		}
+
+		this.moveIncrement = timeIncrement;
+		this.workers.forEach(n, this.moveTask);
+
+		for (int i=0; i<n; i++) {
+			if (!this.moveDone[i]) {
+				hosts.get(i).move(timeIncrement);
+			}
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -286,5 +634,6 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		queueMultiplexer.update(scheduledUpdates);
 	}
 }
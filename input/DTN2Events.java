@@ -30,7 +30,7 @@ import core.SimClock;
  * external events generator in the configuration file.
  * @author teemuk
  */
-public class DTN2Events implements EventQueue {
+public class DTN2Events implements VolatileEventQueue {
 	
 	private Queue<ExternalEvent>	events;
 	
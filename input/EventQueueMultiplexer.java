@@ -0,0 +1,207 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of which one of a set of event queues has the next event.
+ * The queues are kept in a binary heap keyed by their next event's time, so 
+ * finding the next queue is a constant time operation and updating a 
+ * queue's position after its next event has changed is O(log n). If
+ * several queues have their next event at the same time, the one that was
+ * given first to the constructor is returned first. 
+ * <P>
+ * A queue's position is updated only when {@link #update(EventQueue)} is 
+ * called for it, so it must be called every time a queue's next event 
+ * changes (e.g., after {@link EventQueue#nextEvent()}). Queues implementing
+ * {@link VolatileEventQueue} are not kept in the heap but checked on every
+ * query.</P>
+ */
+public class EventQueueMultiplexer {
+	/** the queues in the order of their priority in ties */
+	private EventQueue[] queues;
+	/** cached next event times of the queues (by queue index) */
+	private double[] times;
+	/** queue indexes in heap order */
+	private int[] heap;
+	/** position of each queue (by queue index) in the heap or -1 */
+	private int[] positions;
+	/** number of queues in the heap */
+	private int heapSize;
+	/** indexes of the queues that are not in the heap */
+	private int[] volatileQueues;
+	/** queue indexes by queue */
+	private Map<EventQueue, Integer> indexes;
+
+	/**
+	 * Creates a multiplexer for the given queues.
+	 * @param queues The queues. The order of the list defines which queue's
+	 * event is returned first if their next events have the same time.
+	 */
+	public EventQueueMultiplexer(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		List<Integer> volatiles = new ArrayList<Integer>();
+
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+		this.heapSize = 0;
+		this.indexes = new IdentityHashMap<EventQueue, Integer>(n);
+
+		for (int i=0; i<n; i++) {
+			this.indexes.put(this.queues[i], i);
+			this.positions[i] = -1;
+			if (this.queues[i] instanceof VolatileEventQueue) {
+				volatiles.add(i);
+				continue;
+			}
+			this.times[i] = this.queues[i].nextEventsTime();
+			this.heap[heapSize] = i;
+			this.positions[i] = heapSize;
+			heapSize++;
+			siftUp(heapSize - 1);
+		}
+
+		this.volatileQueues = new int[volatiles.size()];
+		for (int i=0; i<volatileQueues.length; i++) {
+			this.volatileQueues[i] = volatiles.get(i);
+		}
+	}
+
+	/**
+	 * Returns the queue that has the next event or null if there are no 
+	 * queues
+	 * @return The queue that has the next event
+	 */
+	public EventQueue getNextQueue() {
+		int next = nextQueueIndex();
+		return next < 0 ? null : this.queues[next];
+	}
+
+	/**
+	 * Returns the time of the next event in any of the queues or 
+	 * Double.MAX_VALUE if there are no queues
+	 * @return The time of the next event
+	 */
+	public double getNextEventsTime() {
+		int next = nextQueueIndex();
+		if (next < 0) {
+			return Double.MAX_VALUE;
+		}
+		return this.queues[next].nextEventsTime();
+	}
+
+	/**
+	 * Updates the position of a queue after its next event has changed
+	 * @param queue The queue whose next event has changed
+	 */
+	public void update(EventQueue queue) {
+		int index = indexOf(queue);
+		int pos = this.positions[index];
+
+		if (pos < 0) {
+			return; // volatile queue; nothing to update
+		}
+
+		double oldTime = this.times[index];
+		this.times[index] = queue.nextEventsTime();
+		if (this.times[index] < oldTime) {
+			siftUp(pos);
+		}
+		else {
+			siftDown(pos);
+		}
+	}
+
+	/**
+	 * Returns the index of the queue that has the next event, or -1 if 
+	 * there are no queues
+	 */
+	private int nextQueueIndex() {
+		int next = heapSize > 0 ? this.heap[0] : -1;
+
+		for (int i : this.volatileQueues) {
+			double time = this.queues[i].nextEventsTime();
+			if (next < 0 || time < currentTime(next) || 
+					(time == currentTime(next) && i < next)) {
+				next = i;
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Returns the next event's time of a queue; cached value for queues in
+	 * the heap and queried value for the volatile queues
+	 */
+	private double currentTime(int index) {
+		if (this.positions[index] < 0) {
+			return this.queues[index].nextEventsTime();
+		}
+		return this.times[index];
+	}
+
+	/**
+	 * Returns the index of a queue
+	 * @throws IllegalArgumentException if the queue is not in this 
+	 * multiplexer
+	 */
+	private int indexOf(EventQueue queue) {
+		Integer index = this.indexes.get(queue);
+		if (index == null) {
+			throw new IllegalArgumentException("Unknown event queue " + queue);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns true if queue a's next event should be processed before b's
+	 */
+	private boolean isBefore(int a, int b) {
+		return this.times[a] < this.times[b] || 
+			(this.times[a] == this.times[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int index = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(index, this.heap[parent])) {
+				break;
+			}
+			moveTo(this.heap[parent], pos);
+			pos = parent;
+		}
+		moveTo(index, pos);
+	}
+
+	private void siftDown(int pos) {
+		int index = this.heap[pos];
+		while (2 * pos + 1 < this.heapSize) {
+			int child = 2 * pos + 1;
+			if (child + 1 < this.heapSize && 
+					isBefore(this.heap[child + 1], this.heap[child])) {
+				child++;
+			}
+			if (!isBefore(this.heap[child], index)) {
+				break;
+			}
+			moveTo(this.heap[child], pos);
+			pos = child;
+		}
+		moveTo(index, pos);
+	}
+
+	private void moveTo(int index, int pos) {
+		this.heap[pos] = index;
+		this.positions[index] = pos;
+	}
+}
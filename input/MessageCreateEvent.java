@@ -44,6 +44,7 @@ public class MessageCreateEvent extends MessageEvent {
 		Message m = new Message(from, to, this.id, this.size);
 		m.setResponseSize(this.responseSize);
 		from.createNewMessage(m);
+		world.markDirty(from);
 	}
 	
 	@Override
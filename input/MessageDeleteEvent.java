@@ -49,6 +49,8 @@ public class MessageDeleteEvent extends MessageEvent {
 		} else {
 			host.deleteMessage(id, drop);
 		}
+
+		world.markDirty(host);
 	}
 
 	@Override
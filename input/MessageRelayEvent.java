@@ -6,9 +6,6 @@ package input;
 
 import core.DTNHost;
 import core.World;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * External event for all the stages of relaying a message between two
@@ -54,13 +51,7 @@ public class MessageRelayEvent extends MessageEvent {
 			from.sendMessage(id, to);
 			break;
 		case TRANSFERRED:
-                { 
-                    try {
-                        to.messageTransferred(id, from);
-                    } catch (IOException ex) {
-                        Logger.getLogger(MessageRelayEvent.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
+			to.messageTransferred(id, from);
 			break;
 		case ABORTED:
 			to.messageAborted(id, from, -1);
@@ -68,6 +59,9 @@ public class MessageRelayEvent extends MessageEvent {
 		default:
 			assert false : "Invalid stage (" + stage + ") for " + this;
 		}
+
+		world.markDirty(from);
+		world.markDirty(to);
 	}
 	
 	@Override
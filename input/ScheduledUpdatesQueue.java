@@ -4,8 +4,7 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.TreeSet;
 
 /**
  * Event queue where simulation objects can request an update to happen
@@ -15,14 +14,15 @@ import java.util.List;
 public class ScheduledUpdatesQueue implements EventQueue {
 	/** Time of the event (simulated seconds) */
 	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** the rest of the updates, ordered (and made unique) by their time */
+	private TreeSet<ExternalEvent> updates;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
 		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.updates = new TreeSet<ExternalEvent>();
 	}
 	
 	/**
@@ -37,7 +37,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
 		}
 		else {
-			this.nextEvent = this.updates.remove(0);
+			this.nextEvent = this.updates.pollFirst();
 		}
 		
 		return event;
@@ -72,25 +72,15 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
+	 * Puts a event to the queue in the right place (in O(log n) time). 
+	 * If an update with the same time already exists, nothing is added.
 	 * @param ee The event to put to the queue
 	 */
 	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
-			}
+		if (ee.getTime() == Double.MAX_VALUE) {
+			return; // the "no updates" placeholder
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		this.updates.add(ee);
 	}
 	
 	public String toString() {
@@ -0,0 +1,16 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * Marker interface for event queues whose next event's time can change 
+ * without {@link #nextEvent()} being called (e.g., because events are
+ * added to the queue from outside of the simulator). 
+ * {@link EventQueueMultiplexer} checks these queues on every query instead
+ * of keeping them in its heap.
+ */
+public interface VolatileEventQueue extends EventQueue {
+
+}
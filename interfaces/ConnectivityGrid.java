@@ -5,8 +5,10 @@
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -33,13 +35,37 @@ import core.Settings;
  * connectivity. 
  * </P>
  * <P>
+ * The cells are kept in a flat array in row-major order and every cell 
+ * stores the addresses of its interfaces, so moving interfaces between the
+ * cells and finding the near interfaces (to a list given by the caller)
+ * don't create any new objects.
+ * </P>
+ * <P>
  * <strong>Note:</strong> this class does NOT support negative
  * coordinates. Also, it makes sense to normalize the coordinates to start
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	/** cell index of interfaces that are not in any cell */
+	private static final int NO_CELL = -1;
+	/** how large member array is initially chosen for a cell */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+
+	/** addresses of the interfaces in each cell (by cell index, null if the
+	 * cell has never had any interfaces) */
+	private int[][] cellMembers;
+	/** number of interfaces in each cell (by cell index) */
+	private int[] cellSizes;
+	/** interfaces of this grid by their address (null if not in the grid) */
+	private NetworkInterface[] interfaces;
+	/** cell index of every interface (by interface address) or NO_CELL */
+	private int[] interfaceCells;
+	/** cells computed by {@link #prepareLocation(NetworkInterface)}, indexed
+	 * by interface address (NO_CELL if not prepared) */
+	private int[] preparedCells;
+	/** differences between the index of a cell and the indexes of its 
+	 * neighbors and itself, in the row-major order */
+	private int[] neighborOffsets;
 	private int cellSize;
 	private int rows;
 	private int cols;
@@ -72,15 +98,20 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
+		this.cellMembers = new int[(rows+2) * (cols+2)][];
+		this.cellSizes = new int[(rows+2) * (cols+2)];
 		this.cellSize = cellSize;
 
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		int w = cols + 2;
+		this.neighborOffsets = new int[] {
+			-w-1, -w, -w+1, // 1st row
+			-1, 0, 1,		// 2nd row
+			w-1, w, w+1		// 3rd row
+		};
+
+		this.interfaces = new NetworkInterface[0];
+		this.interfaceCells = new int[0];
+		this.preparedCells = new int[0];
 	}
 
 	/**
@@ -103,13 +134,27 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * Adds a network interface to the overlay grid
+	 * Adds a network interface to the overlay grid (unless it is already
+	 * present)
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		int address = ni.getAddress();
+
+		if (address >= interfaces.length) {
+			int newLength = Math.max(address + 1, interfaces.length * 2);
+			interfaces = Arrays.copyOf(interfaces, newLength);
+			interfaceCells = copyOf(interfaceCells, newLength);
+			preparedCells = copyOf(preparedCells, newLength);
+		}
+		else if (interfaces[address] != null) {
+			return; // already in the grid
+		}
+
+		int cell = cellFromCoord(ni.getLocation());
+		addToCell(cell, address);
+		interfaces[address] = ni;
+		interfaceCells[address] = cell;
 	}
 
 	/** 
@@ -117,11 +162,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		int address = ni.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
 		}
-		ginterfaces.remove(ni);
+
+		removeFromCell(interfaceCells[address], address);
+		interfaces[address] = null;
+		interfaceCells[address] = NO_CELL;
+		preparedCells[address] = NO_CELL;
 	}
 
 	/**
@@ -139,48 +188,45 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int address = ni.getAddress();
+		int oldCell = interfaceCells[address];
+		int newCell = preparedCells[address];
 
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		if (newCell == NO_CELL) {
+			newCell = cellFromCoord(ni.getLocation());
+		}
+		else {
+			preparedCells[address] = NO_CELL;
+			assert newCell == cellFromCoord(ni.getLocation()) : "Interface " +
+				ni + " moved after its location update was prepared";
 		}
-	}
 
-	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
-	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+		if (newCell != oldCell) {
+			addToCell(newCell, address);
+			removeFromCell(oldCell, address);
+			interfaceCells[address] = newCell;
+		}
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Computes the cell of the interface's current location for the next 
+	 * {@link #updateLocation(NetworkInterface)} call. Only the interface's own
+	 * slot is written so different interfaces can be prepared concurrently.
+	 * @param ni The interface to prepare
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	@Override
+	public void prepareLocation(NetworkInterface ni) {
+		if (ni.getAddress() < preparedCells.length) {
+			preparedCells[ni.getAddress()] = cellFromCoord(ni.getLocation());
+		}
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
+	 * Get the index of the cell having the specific coordinates
 	 * @param c Coordinates
-	 * @return The cell
+	 * @return The cell's index
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellFromCoord(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1; 
 		int col = (int)(c.getX()/cellSize) + 1;
@@ -188,14 +234,71 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * (cols+2) + col;
+	}
+
+	/**
+	 * Adds an interface to the end of a cell's member list
+	 * @param cell Index of the cell
+	 * @param address Address of the interface
+	 */
+	private void addToCell(int cell, int address) {
+		int[] members = cellMembers[cell];
+		int size = cellSizes[cell];
+
+		if (members == null) {
+			members = new int[EXPECTED_INTERFACE_COUNT];
+			cellMembers[cell] = members;
+		}
+		else if (size == members.length) {
+			members = Arrays.copyOf(members, size * 2);
+			cellMembers[cell] = members;
+		}
+
+		members[size] = address;
+		cellSizes[cell] = size + 1;
+	}
+
+	/**
+	 * Removes an interface from a cell's member list. The order of the 
+	 * other members is preserved.
+	 * @param cell Index of the cell
+	 * @param address Address of the interface
+	 */
+	private void removeFromCell(int cell, int address) {
+		int[] members = cellMembers[cell];
+		int size = cellSizes[cell];
+
+		for (int i=0; i<size; i++) {
+			if (members[i] == address) {
+				System.arraycopy(members, i+1, members, i, size - i - 1);
+				cellSizes[cell] = size - 1;
+				return;
+			}
+		}
+		assert false : "interface " + address + " not found from cell " + cell;
+	}
+
+	/**
+	 * Returns a copy of an int array with the new slots set to NO_CELL
+	 */
+	private static int[] copyOf(int[] array, int newLength) {
+		int[] copy = Arrays.copyOf(array, newLength);
+		Arrays.fill(copy, array.length, newLength, NO_CELL);
+		return copy;
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (NetworkInterface ni : interfaces) {
+			if (ni != null) {
+				all.add(ni);
+			}
+		}
+		return all;
 	}
 
 	/**
@@ -205,17 +308,32 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
 		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+		getNearInterfaces(netinterf, ni);
+		return ni;
+	}
+
+	/**
+	 * Puts all interfaces using the same technology and channel that are in
+	 * neighboring cells to the given list. Doesn't allocate anything unless
+	 * the list needs to grow.
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface netinterf, 
+			List<NetworkInterface> result) {
+		result.clear();
+
+		int address = netinterf.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
+		}
+
+		int cell = cellFromCoord(netinterf.getLocation());
+		for (int offset : neighborOffsets) {
+			int[] members = cellMembers[cell + offset];
+			for (int i=0, n = cellSizes[cell + offset]; i < n; i++) {
+				result.add(interfaces[members[i]]);
 			}
 		}
-		return ni;
 	}
 
 
@@ -227,65 +345,4 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		return getClass().getSimpleName() + " of size " + 
 			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
 	}
-
-	/**
-	 * A single cell in the cell grid. Contains the interfaces that are 
-	 * currently in that part of the grid.
-	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
-		}
-
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
-		}
-
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
-		}
-
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
-			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces.toString();
-		}
-
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
-		}
-	}
-	
-}
\ No newline at end of file
+}
@@ -5,8 +5,12 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.List;
 
 import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
@@ -14,6 +18,44 @@ import core.NetworkInterface;
  */
 abstract public class ConnectivityOptimizer {
 
+	/**
+	 * Returns the connectivity optimizer for a specific interface type. The
+	 * type of the optimizer is defined by the 
+	 * {@link World#CONNECTIVITY_OPTIMIZER_S} setting.
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be at least the largest
+	 * 	radio range)
+	 * @return The connectivity optimizer for the interface type
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key, 
+			double cellSize) {
+		Settings s = new Settings(World.SETTINGS_NS);
+		String type = World.DEF_CONNECTIVITY_OPTIMIZER;
+		if (s.contains(World.CONNECTIVITY_OPTIMIZER_S)) {
+			type = s.getSetting(World.CONNECTIVITY_OPTIMIZER_S);
+		}
+
+		if (type.equals("ConnectivityGrid")) {
+			return ConnectivityGrid.ConnectivityGridFactory(key, cellSize);
+		}
+		else if (type.equals("PairwiseConnectivityGrid")) {
+			return PairwiseConnectivityGrid.PairwiseConnectivityGridFactory(
+					key, cellSize);
+		}
+		else if (type.equals("MultiLevelConnectivityGrid")) {
+			return MultiLevelConnectivityGrid.
+				MultiLevelConnectivityGridFactory(key, cellSize);
+		}
+		else if (type.equals("PredictiveConnectivityGrid")) {
+			return PredictiveConnectivityGrid.
+				PredictiveConnectivityGridFactory(key, cellSize);
+		}
+		throw new SettingsError("Unknown connectivity optimizer \"" + type + 
+				"\" for " + World.SETTINGS_NS + "." + 
+				World.CONNECTIVITY_OPTIMIZER_S);
+	}
+
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
 	 */
@@ -30,6 +72,26 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void updateLocation(NetworkInterface ni);
 
+	/**
+	 * Precomputes whatever the next {@link #updateLocation(NetworkInterface)}
+	 * call for the interface needs, without modifying any state shared with
+	 * other interfaces. Can be called concurrently for different interfaces.
+	 * The default implementation does nothing.
+	 * @param ni The interface whose location update should be prepared
+	 */
+	public void prepareLocation(NetworkInterface ni) {
+		/* nothing to prepare by default */
+	}
+
+	/**
+	 * Informs the optimizer that the transmit range of a network interface 
+	 * has changed. The default implementation does nothing.
+	 * @param ni The interface whose range has changed
+	 */
+	public void updateRange(NetworkInterface ni) {
+		/* range doesn't affect the optimization by default */
+	}
+
 	/**
 	 * Finds all network interfaces that might be located so that they can be
 	 * connected with the network interface
@@ -40,6 +102,22 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Finds all network interfaces that might be located so that they can be
+	 * connected with the network interface and puts them to the given list.
+	 * The list is cleared first, so the same list can be reused for every 
+	 * call. The default implementation copies the result of 
+	 * {@link #getNearInterfaces(NetworkInterface)}.
+	 * 
+	 * @param ni network interface that needs to be connected
+	 * @param result The list where the interfaces within proximity are put
+	 */
+	public void getNearInterfaces(NetworkInterface ni, 
+			List<NetworkInterface> result) {
+		result.clear();
+		result.addAll(getNearInterfaces(ni));
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
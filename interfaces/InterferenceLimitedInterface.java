@@ -4,12 +4,12 @@
  */
 package interfaces;
 
-import java.util.Collection;
 
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
 import core.Settings;
+import core.SimClock;
 import core.VBRConnection;
 
 /**
@@ -64,7 +64,8 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 				&& anotherInterface.getHost().isActive()
 				&& isWithinRange(anotherInterface)
 				&& !isConnected(anotherInterface) 
-				&& (this != anotherInterface)) {
+				&& (this != anotherInterface)
+				&& !isBlacklisted(anotherInterface)) {
 			// new contact within range
 
 			Connection con = new VBRConnection(this.host, this,
@@ -87,18 +88,18 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			// all connections should be up at this stage
 			assert con.isUp() : "Connection " + con + " was down!";
 
-			if (!isWithinRange(anotherInterface)) {
+			if (!isWithinRange(anotherInterface) ||
+					isBlacklisted(anotherInterface)) {
 				disconnect(con,anotherInterface);
-				connections.remove(i);
+				removeConnection(con, anotherInterface);
 			} else {
 				i++;
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		optimizer.getNearInterfaces(this, nearInterfaces);
+		for (int i=0, n = nearInterfaces.size(); i < n; i++) 
+			connect(nearInterfaces.get(i));
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -145,6 +146,18 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Returns the current time if some connection is to a blacklisted host
+	 * (those connections are torn down at the next update).
+	 */
+	@Override
+	public double getNextEventTime() {
+		if (hasBlacklistedConnection()) {
+			return SimClock.getTime();
+		}
+		return super.getNextEventTime();
+	}
+
 	/**
 	 * Returns true if this interface is actually transmitting data
 	 */
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * <P>
+ * Hierarchy of overlay grids for interfaces with different transmit ranges.
+ * Every level's cells are twice as large as the previous level's, starting
+ * from the cell size given to the factory. Every interface is put on the
+ * first level whose cells are at least as large as the interface's range
+ * (or on the level whose cells cover the whole world if the range is
+ * larger than that), so interfaces with short ranges don't need to search the large cells of
+ * the long range interfaces and vice versa.</P>
+ *
+ * <P>To find the interfaces that might be within range of an interface, all
+ * the levels are searched, but on each level only the cells that are within
+ * the smaller one of the interface's range and the level's cell size from
+ * the interface (two interfaces can only be connected if they are within
+ * the smaller one of their ranges). On the levels with cells larger than
+ * the range that is at most four cells.</P>
+ *
+ * <P>Changes of the transmit range (e.g., through
+ * {@link NetworkInterface#RANGE_ID}) move the interface to the right level
+ * immediately (see {@link #updateRange(NetworkInterface)}), and new levels
+ * are added if an interface's range grows larger than the largest cells.
+ * </P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class MultiLevelConnectivityGrid extends ConnectivityOptimizer {
+	/** level or cell index of interfaces that are not in the grid */
+	private static final int NONE = -1;
+	/** how large member array is initially chosen for a cell */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+
+	/** the levels from the smallest cells to the largest */
+	private List<Level> levels;
+	/** the smallest cell size */
+	private int baseCellSize;
+	/** interfaces of this grid by their address (null if not in the grid) */
+	private NetworkInterface[] interfaces;
+	/** level of every interface (by interface address) or NONE */
+	private int[] interfaceLevels;
+	/** cell index of every interface on its level (by address) or NONE */
+	private int[] interfaceCells;
+	private static int worldSizeX;
+	private static int worldSizeY;
+
+	static HashMap<Integer,MultiLevelConnectivityGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(
+				MultiLevelConnectivityGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer,MultiLevelConnectivityGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new multi-level connectivity grid with one level
+	 * @param cellSize The smallest cell's edge's length (values smaller than
+	 * one, e.g., the range of an interface with zero range, are rounded up
+	 * to one)
+	 */
+	private MultiLevelConnectivityGrid(int cellSize) {
+		this.baseCellSize = Math.max(1, cellSize);
+		this.levels = new ArrayList<Level>();
+		this.levels.add(new Level(this.baseCellSize));
+
+		this.interfaces = new NetworkInterface[0];
+		this.interfaceLevels = new int[0];
+		this.interfaceCells = new int[0];
+	}
+
+	/**
+	 * Returns a multi-level connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize The smallest cell's edge's length (e.g., the range of
+	 * 	the first interface)
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static MultiLevelConnectivityGrid MultiLevelConnectivityGridFactory(
+			int key, double cellSize) {
+		if (gridobjects.containsKey((Integer)key)) {
+			return gridobjects.get((Integer)key);
+		} else {
+			MultiLevelConnectivityGrid newgrid =
+				new MultiLevelConnectivityGrid((int)Math.ceil(cellSize));
+			gridobjects.put((Integer)key,newgrid);
+			return newgrid;
+		}
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int address = ni.getAddress();
+
+		if (address >= interfaces.length) {
+			int newLength = Math.max(address + 1, interfaces.length * 2);
+			interfaces = Arrays.copyOf(interfaces, newLength);
+			interfaceLevels = Arrays.copyOf(interfaceLevels, newLength);
+			interfaceCells = Arrays.copyOf(interfaceCells, newLength);
+			Arrays.fill(interfaceLevels, address, newLength, NONE);
+			Arrays.fill(interfaceCells, address, newLength, NONE);
+		}
+		else if (interfaces[address] != null) {
+			return; // already in the grid
+		}
+
+		int level = levelFor(ni.getTransmitRange());
+		int cell = levels.get(level).cellFromCoord(ni.getLocation());
+		levels.get(level).addToCell(cell, address);
+		interfaces[address] = ni;
+		interfaceLevels[address] = level;
+		interfaceCells[address] = cell;
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
+		}
+
+		levels.get(interfaceLevels[address]).removeFromCell(
+				interfaceCells[address], address);
+		interfaces[address] = null;
+		interfaceLevels[address] = NONE;
+		interfaceCells[address] = NONE;
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's position in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int address = ni.getAddress();
+		Level level = levels.get(interfaceLevels[address]);
+		int oldCell = interfaceCells[address];
+		int newCell = level.cellFromCoord(ni.getLocation());
+
+		if (newCell != oldCell) {
+			level.addToCell(newCell, address);
+			level.removeFromCell(oldCell, address);
+			interfaceCells[address] = newCell;
+		}
+	}
+
+	/**
+	 * Moves the interface to the level that matches its current range
+	 * @param ni The interface whose range has changed
+	 */
+	@Override
+	public void updateRange(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
+		}
+
+		int oldLevel = interfaceLevels[address];
+		int newLevel = levelFor(ni.getTransmitRange());
+		if (newLevel == oldLevel) {
+			return;
+		}
+
+		levels.get(oldLevel).removeFromCell(interfaceCells[address], address);
+		int cell = levels.get(newLevel).cellFromCoord(ni.getLocation());
+		levels.get(newLevel).addToCell(cell, address);
+		interfaceLevels[address] = newLevel;
+		interfaceCells[address] = cell;
+	}
+
+	/**
+	 * Returns the index of the level for interfaces with the given range.
+	 * Adds new levels if the range is larger than the largest cells, but
+	 * not beyond the first level whose cells cover the whole world.
+	 * @param range The transmit range
+	 * @return Index of the first level whose cells are at least the range
+	 * (or cover the whole world)
+	 */
+	private int levelFor(double range) {
+		int worldSize = Math.max(worldSizeX, worldSizeY);
+		int level = 0;
+		while (levels.get(level).cellSize < range &&
+				levels.get(level).cellSize < worldSize) {
+			level++;
+			if (level == levels.size()) {
+				long cellSize = (long)baseCellSize << level;
+				levels.add(new Level((int)Math.min(cellSize,
+						Integer.MAX_VALUE)));
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (NetworkInterface ni : interfaces) {
+			if (ni != null) {
+				all.add(ni);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are
+	 * in cells that might be within range of the interface
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		getNearInterfaces(netinterf, ni);
+		return ni;
+	}
+
+	/**
+	 * Puts all interfaces using the same technology and channel that are in
+	 * cells that might be within range of the interface to the given list.
+	 * Doesn't allocate anything unless the list needs to grow.
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface netinterf,
+			List<NetworkInterface> result) {
+		result.clear();
+
+		int address = netinterf.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
+		}
+
+		Coord c = netinterf.getLocation();
+		double range = netinterf.getTransmitRange();
+		for (int i=0, n = levels.size(); i < n; i++) {
+			levels.get(i).getInterfacesNear(c, range, result);
+		}
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + levels.size() +
+			" levels, smallest cell size=" + this.baseCellSize;
+	}
+
+	/**
+	 * One level of the grid. The cells are kept in a flat array in row-major
+	 * order and every cell stores the addresses of its interfaces.
+	 */
+	private class Level {
+		private int cellSize;
+		private int rows;
+		private int cols;
+		/** addresses of the interfaces in each cell (by cell index, null if
+		 * the cell has never had any interfaces) */
+		private int[][] cellMembers;
+		/** number of interfaces in each cell (by cell index) */
+		private int[] cellSizes;
+
+		/**
+		 * Creates a new level
+		 * @param cellSize Cell's edge's length
+		 */
+		private Level(int cellSize) {
+			this.cellSize = cellSize;
+			this.rows = worldSizeY/cellSize + 1;
+			this.cols = worldSizeX/cellSize + 1;
+			// leave empty cells on both sides to make neighbor search easier
+			this.cellMembers = new int[(rows+2) * (cols+2)][];
+			this.cellSizes = new int[(rows+2) * (cols+2)];
+		}
+
+		/**
+		 * Get the index of the cell having the specific coordinates
+		 * @param c Coordinates
+		 * @return The cell's index
+		 */
+		private int cellFromCoord(Coord c) {
+			// +1 due empty cells on both sides of the matrix
+			int row = (int)(c.getY()/cellSize) + 1;
+			int col = (int)(c.getX()/cellSize) + 1;
+
+			assert row > 0 && row <= rows && col > 0 && col <= cols :
+				"Location " + c + " is out of world's bounds";
+
+			return row * (cols+2) + col;
+		}
+
+		/**
+		 * Adds the interfaces of the cells that are within the given
+		 * distance (or the cell size, if it is smaller) from the given
+		 * coordinates to the list
+		 * @param c The coordinates
+		 * @param range The distance
+		 * @param result The list where to add the interfaces
+		 */
+		private void getInterfacesNear(Coord c, double range,
+				List<NetworkInterface> result) {
+			double dist = Math.min(range, cellSize);
+			// +1 due empty cells on both sides of the matrix
+			int minRow = Math.max(0, (int)((c.getY() - dist)/cellSize) + 1);
+			int maxRow = Math.min(rows+1, (int)((c.getY() + dist)/cellSize) +1);
+			int minCol = Math.max(0, (int)((c.getX() - dist)/cellSize) + 1);
+			int maxCol = Math.min(cols+1, (int)((c.getX() + dist)/cellSize) +1);
+
+			for (int row = minRow; row <= maxRow; row++) {
+				for (int col = minCol; col <= maxCol; col++) {
+					int cell = row * (cols+2) + col;
+					int[] members = cellMembers[cell];
+					for (int i=0, n = cellSizes[cell]; i < n; i++) {
+						result.add(interfaces[members[i]]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds an interface to the end of a cell's member list
+		 * @param cell Index of the cell
+		 * @param address Address of the interface
+		 */
+		private void addToCell(int cell, int address) {
+			int[] members = cellMembers[cell];
+			int size = cellSizes[cell];
+
+			if (members == null) {
+				members = new int[EXPECTED_INTERFACE_COUNT];
+				cellMembers[cell] = members;
+			}
+			else if (size == members.length) {
+				members = Arrays.copyOf(members, size * 2);
+				cellMembers[cell] = members;
+			}
+
+			members[size] = address;
+			cellSizes[cell] = size + 1;
+		}
+
+		/**
+		 * Removes an interface from a cell's member list. The order of the
+		 * other members is preserved.
+		 * @param cell Index of the cell
+		 * @param address Address of the interface
+		 */
+		private void removeFromCell(int cell, int address) {
+			int[] members = cellMembers[cell];
+			int size = cellSizes[cell];
+
+			for (int i=0; i<size; i++) {
+				if (members[i] == address) {
+					System.arraycopy(members, i+1, members, i, size - i - 1);
+					cellSizes[cell] = size - 1;
+					return;
+				}
+			}
+			assert false : "interface " + address + " not found from cell " +
+				cell;
+		}
+	}
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * <P>
+ * Overlay grid that finds all pairs of interfaces that are within range of
+ * each other in a single pass over the whole grid.</P>
+ *
+ * <P>Unlike {@link ConnectivityGrid}, which searches the nine cells around
+ * every interface separately (and so tests every pair twice), this grid
+ * sorts all the interfaces to cells and then goes through every cell
+ * together with only half of its neighbor cells (east, south-west, south and
+ * south-east). This way every pair of interfaces in the same or in
+ * neighboring cells is tested exactly once, using squared distances. The
+ * interfaces that are within range of an interface are then given to it as
+ * its near interfaces, so the interfaces still create and tear down the
+ * connections themselves.</P>
+ *
+ * <P>The pairs are swept again when the simulation time has changed and some
+ * interface has moved or changed its range since the last sweep. Locations
+ * are read only when sweeping, so {@link #updateLocation(NetworkInterface)}
+ * does nothing. Since all the interfaces are sorted to their current cells
+ * at once, connections may come up in different order than with
+ * {@link ConnectivityGrid}, where the cells of the interfaces that haven't
+ * been updated yet lag one update behind.</P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class PairwiseConnectivityGrid extends ConnectivityOptimizer {
+	/** how large partner array is initially chosen for an interface */
+	private static final int EXPECTED_PARTNER_COUNT = 5;
+	/** relative slack of the squared range in the sweep; interfaces check
+	 * the exact distance again when they connect */
+	private static final double RANGE_SLACK = 1e-9;
+
+	/** interfaces of this grid by their address (null if not in the grid) */
+	private NetworkInterface[] interfaces;
+	/** addresses of the interfaces in the order they were added */
+	private int[] addresses;
+	private int nrofInterfaces;
+
+	/** number of interfaces in every cell during a sweep (by cell index) */
+	private int[] cellCounts;
+	/** index of every cell's first interface in sortedAddresses */
+	private int[] cellStarts;
+	/** indexes of the cells that have interfaces in the current sweep */
+	private int[] occupiedCells;
+	/** addresses of the interfaces sorted by their cell */
+	private int[] sortedAddresses;
+	/** differences between the index of a cell and the indexes of the
+	 * neighbors that are swept together with it */
+	private int[] halfNeighborOffsets;
+
+	/** locations and ranges of the interfaces (by address) in the last
+	 * sweep */
+	private double[] sweptX;
+	private double[] sweptY;
+	private double[] sweptRanges;
+	/** addresses of the in-range interfaces of every interface (by address) */
+	private int[][] partners;
+	/** number of in-range interfaces of every interface (by address) */
+	private int[] nrofPartners;
+	/** simulation time of the last sweep */
+	private double sweepTime;
+	/** are the partners up to date with the set of interfaces */
+	private boolean isSwept;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	private static int worldSizeX;
+	private static int worldSizeY;
+
+	static HashMap<Integer,PairwiseConnectivityGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(
+				PairwiseConnectivityGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer,PairwiseConnectivityGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new pairwise connectivity grid
+	 * @param cellSize Cell's edge's length (must be at least the largest
+	 * 	radio range)
+	 */
+	private PairwiseConnectivityGrid(int cellSize) {
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		this.cellSize = cellSize;
+		// leave empty cells on both sides to make neighbor search easier
+		this.cellCounts = new int[(rows+2) * (cols+2)];
+		this.cellStarts = new int[(rows+2) * (cols+2)];
+
+		int w = cols + 2;
+		this.halfNeighborOffsets = new int[] {1, w-1, w, w+1};
+
+		this.interfaces = new NetworkInterface[0];
+		this.addresses = new int[0];
+		this.occupiedCells = new int[0];
+		this.sortedAddresses = new int[0];
+		this.sweptX = new double[0];
+		this.sweptY = new double[0];
+		this.sweptRanges = new double[0];
+		this.partners = new int[0][];
+		this.nrofPartners = new int[0];
+		this.isSwept = false;
+	}
+
+	/**
+	 * Returns a pairwise connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be at least the largest
+	 * 	radio range)
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static PairwiseConnectivityGrid PairwiseConnectivityGridFactory(
+			int key, double cellSize) {
+		if (gridobjects.containsKey((Integer)key)) {
+			return gridobjects.get((Integer)key);
+		} else {
+			PairwiseConnectivityGrid newgrid =
+				new PairwiseConnectivityGrid((int)Math.ceil(cellSize));
+			gridobjects.put((Integer)key,newgrid);
+			return newgrid;
+		}
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int address = ni.getAddress();
+
+		if (address >= interfaces.length) {
+			int newLength = Math.max(address + 1, interfaces.length * 2);
+			interfaces = Arrays.copyOf(interfaces, newLength);
+			sweptX = Arrays.copyOf(sweptX, newLength);
+			sweptY = Arrays.copyOf(sweptY, newLength);
+			sweptRanges = Arrays.copyOf(sweptRanges, newLength);
+			partners = Arrays.copyOf(partners, newLength);
+			nrofPartners = Arrays.copyOf(nrofPartners, newLength);
+		}
+		else if (interfaces[address] != null) {
+			return; // already in the grid
+		}
+
+		if (nrofInterfaces == addresses.length) {
+			int newLength = Math.max(1, nrofInterfaces * 2);
+			addresses = Arrays.copyOf(addresses, newLength);
+			occupiedCells = Arrays.copyOf(occupiedCells, newLength);
+			sortedAddresses = Arrays.copyOf(sortedAddresses, newLength);
+		}
+
+		interfaces[address] = ni;
+		partners[address] = new int[EXPECTED_PARTNER_COUNT];
+		addresses[nrofInterfaces++] = address;
+		isSwept = false;
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Does nothing; the locations are read when the pairs are swept
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		/* nothing to do */
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (int i=0; i<nrofInterfaces; i++) {
+			all.add(interfaces[addresses[i]]);
+		}
+		return all;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are
+	 * within range of the interface
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		getNearInterfaces(netinterf, ni);
+		return ni;
+	}
+
+	/**
+	 * Puts all interfaces using the same technology and channel that are
+	 * within range of the interface to the given list. Sweeps the pairs
+	 * again first if needed.
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface netinterf,
+			List<NetworkInterface> result) {
+		result.clear();
+
+		int address = netinterf.getAddress();
+		if (address >= interfaces.length || interfaces[address] == null) {
+			return;
+		}
+
+		if (needsSweep()) {
+			sweep();
+		}
+
+		int[] near = partners[address];
+		for (int i=0, n = nrofPartners[address]; i < n; i++) {
+			result.add(interfaces[near[i]]);
+		}
+	}
+
+	/**
+	 * Returns true if some interface may have moved or changed its range
+	 * since the last sweep
+	 */
+	private boolean needsSweep() {
+		if (!isSwept) {
+			return true;
+		}
+		if (SimClock.getTime() == sweepTime) {
+			return false; // nothing moves during an update
+		}
+
+		sweepTime = SimClock.getTime();
+		for (int i=0; i<nrofInterfaces; i++) {
+			int a = addresses[i];
+			NetworkInterface ni = interfaces[a];
+			Coord c = ni.getLocation();
+			if (c.getX() != sweptX[a] || c.getY() != sweptY[a] ||
+					ni.getTransmitRange() != sweptRanges[a]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts all interfaces to their current cells and finds all pairs of
+	 * interfaces that are within range of each other
+	 */
+	private void sweep() {
+		int nrofOccupied = 0;
+
+		/* count the interfaces of every cell */
+		for (int i=0; i<nrofInterfaces; i++) {
+			int a = addresses[i];
+			NetworkInterface ni = interfaces[a];
+			Coord c = ni.getLocation();
+			sweptX[a] = c.getX();
+			sweptY[a] = c.getY();
+			sweptRanges[a] = ni.getTransmitRange();
+			nrofPartners[a] = 0;
+
+			int cell = cellFromCoord(c);
+			if (cellCounts[cell]++ == 0) {
+				occupiedCells[nrofOccupied++] = cell;
+			}
+		}
+
+		/* sort the interfaces by their cells */
+		for (int i=0, start=0; i<nrofOccupied; i++) {
+			int cell = occupiedCells[i];
+			cellStarts[cell] = start;
+			start += cellCounts[cell];
+			cellCounts[cell] = 0;
+		}
+		for (int i=0; i<nrofInterfaces; i++) {
+			int a = addresses[i];
+			int cell = cellFromCoord(sweptX[a], sweptY[a]);
+			sortedAddresses[cellStarts[cell] + cellCounts[cell]++] = a;
+		}
+
+		/* test the pairs inside every cell and between the cell and half of
+		 * its neighbors */
+		for (int i=0; i<nrofOccupied; i++) {
+			int cell = occupiedCells[i];
+			int start = cellStarts[cell];
+			int end = start + cellCounts[cell];
+
+			for (int j=start; j<end; j++) {
+				for (int k=j+1; k<end; k++) {
+					testPair(sortedAddresses[j], sortedAddresses[k]);
+				}
+			}
+
+			for (int offset : halfNeighborOffsets) {
+				int other = cell + offset;
+				int otherStart = cellStarts[other];
+				int otherEnd = otherStart + cellCounts[other];
+				if (otherEnd == otherStart) {
+					continue;
+				}
+				for (int j=start; j<end; j++) {
+					for (int k=otherStart; k<otherEnd; k++) {
+						testPair(sortedAddresses[j], sortedAddresses[k]);
+					}
+				}
+			}
+		}
+
+		for (int i=0; i<nrofOccupied; i++) {
+			cellCounts[occupiedCells[i]] = 0;
+		}
+
+		sweepTime = SimClock.getTime();
+		isSwept = true;
+	}
+
+	/**
+	 * Makes two interfaces each other's partners if they are within range
+	 * @param a Address of the first interface
+	 * @param b Address of the second interface
+	 */
+	private void testPair(int a, int b) {
+		double dx = sweptX[a] - sweptX[b];
+		double dy = sweptY[a] - sweptY[b];
+		double range = Math.min(sweptRanges[a], sweptRanges[b]);
+
+		if (dx*dx + dy*dy <= range * range * (1 + RANGE_SLACK)) {
+			addPartner(a, b);
+			addPartner(b, a);
+		}
+	}
+
+	/**
+	 * Adds an interface to another interface's partners
+	 * @param a Address of the interface whose partner is added
+	 * @param partner Address of the partner
+	 */
+	private void addPartner(int a, int partner) {
+		int n = nrofPartners[a];
+		if (n == partners[a].length) {
+			partners[a] = Arrays.copyOf(partners[a], n * 2);
+		}
+		partners[a][n] = partner;
+		nrofPartners[a] = n + 1;
+	}
+
+	/**
+	 * Get the index of the cell having the specific coordinates
+	 * @param c Coordinates
+	 * @return The cell's index
+	 */
+	private int cellFromCoord(Coord c) {
+		return cellFromCoord(c.getX(), c.getY());
+	}
+
+	/**
+	 * Get the index of the cell having the specific coordinates
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The cell's index
+	 */
+	private int cellFromCoord(double x, double y) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(y/cellSize) + 1;
+		int col = (int)(x/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location (" +
+		x + "," + y + ") is out of world's bounds";
+
+		return row * (cols+2) + col;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
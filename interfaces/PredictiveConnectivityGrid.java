@@ -0,0 +1,701 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * <P>
+ * Overlay grid that predicts when interfaces come within range of each
+ * other from the current destinations and speeds of their hosts.</P>
+ *
+ * <P>Every interface has a trajectory: its location when the trajectory
+ * was computed and a constant velocity towards the host's current
+ * destination until the destination is reached, after which the host is
+ * expected to stay still. For every pair of interfaces in the same or in
+ * neighboring cells the grid solves the next time interval when the
+ * interfaces are within range of each other, so finding the near
+ * interfaces of an interface only needs a comparison of the current time
+ * with the interval of every pair instead of a distance test.</P>
+ *
+ * <P>A trajectory is computed again when the host gets a new destination
+ * (the grid is a {@link MovementListener} of the hosts), when the
+ * interface's range changes or when the interface's location doesn't match
+ * the trajectory when it is updated (e.g. when the host has become inactive
+ * or its location was set directly). The intervals of the pairs of that
+ * interface are solved again when they are needed next time. New pairs are
+ * searched only when an interface moves to another cell.</P>
+ *
+ * <P>Hosts are still moved, and interfaces updated, once per update
+ * interval, so the predictions don't change when connections come up or go
+ * down, but only remove the distance tests of the interfaces that are not
+ * within range.</P>
+ *
+ * <P><strong>Note:</strong> this class does NOT support negative
+ * coordinates.</P>
+ */
+public class PredictiveConnectivityGrid extends ConnectivityOptimizer
+		implements MovementListener {
+	/** how large member array is initially chosen for a cell */
+	private static final int EXPECTED_CELL_SIZE = 5;
+	/** how large pair arrays are initially chosen for an interface */
+	private static final int EXPECTED_PAIR_COUNT = 10;
+	/** how far (in both coordinates) an interface's location can be from
+	 * its trajectory before the trajectory is computed again */
+	private static final double LOCATION_TOLERANCE = 1e-6;
+	/** how much the ranges are extended when solving the contact intervals;
+	 * interfaces check the exact distance again when they connect */
+	private static final double RANGE_SLACK = 1e-5;
+	/** cell index of an interface that is not in any cell */
+	private static final int NO_CELL = -1;
+
+	/** interfaces of this grid by their address (null if not in the grid) */
+	private NetworkInterface[] interfaces;
+	/** addresses of the interfaces in the order they were added */
+	private int[] addresses;
+	private int nrofInterfaces;
+
+	/* trajectories of the interfaces (by address): location at the start
+	 * time and velocity until the end time */
+	private double[] trX;
+	private double[] trY;
+	private double[] trVx;
+	private double[] trVy;
+	private double[] trStart;
+	private double[] trEnd;
+	/** transmit ranges the trajectories were computed with */
+	private double[] trRanges;
+	/** incremented every time an interface's trajectory is computed */
+	private int[] trVersions;
+	/** has the host of an interface got a new destination */
+	private boolean[] isOutdated;
+
+	/** index of the cell of every interface (by address) */
+	private int[] interfaceCells;
+	/** incremented every time an interface moves to another cell */
+	private int[] cellVersions;
+	/** addresses of every cell's interfaces (by cell index) */
+	private int[][] cellMembers;
+	/** number of interfaces in every cell (by cell index) */
+	private int[] cellSizes;
+	/** differences between the index of a cell and its neighbors' (and its
+	 * own) indexes */
+	private int[] neighborOffsets;
+
+	/* pairs of every interface (by address) */
+	/** addresses of the other interfaces */
+	private int[][] pairAddresses;
+	/** cell versions of the other interfaces when the pair was found */
+	private int[][] pairCellVersions;
+	/** versions of the own and the other trajectory the interval was solved
+	 * with (two values per pair) */
+	private int[][] pairTrVersions;
+	/** start and end of the next contact interval (two values per pair;
+	 * both are infinite if the interfaces are not predicted to get within
+	 * range) */
+	private double[][] pairIntervals;
+	/** number of pairs of every interface */
+	private int[] nrofPairs;
+
+	/* results of the last search of every interface (by address) */
+	/** addresses of the interfaces that were within range */
+	private int[][] nearAddresses;
+	private int[] nrofNear;
+	/** earliest start of an interval that hadn't started yet */
+	private double[] nextStarts;
+	/** earliest end of an interval that was going on */
+	private double[] nextEnds;
+	/** has a pair of the interface, or a trajectory of a pair, changed
+	 * since the last search */
+	private boolean[] isChanged;
+	/** start and end of the last solved interval */
+	private double solvedStart;
+	private double solvedEnd;
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	private static int worldSizeX;
+	private static int worldSizeY;
+
+	static HashMap<Integer,PredictiveConnectivityGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(
+				PredictiveConnectivityGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer,PredictiveConnectivityGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new predictive connectivity grid
+	 * @param cellSize Cell's edge's length (must be at least the largest
+	 * 	radio range)
+	 */
+	private PredictiveConnectivityGrid(int cellSize) {
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		this.cellSize = cellSize;
+		// leave empty cells on both sides to make neighbor search easier
+		this.cellMembers = new int[(rows+2) * (cols+2)][];
+		this.cellSizes = new int[(rows+2) * (cols+2)];
+
+		int w = cols + 2;
+		this.neighborOffsets = new int[] {-w-1, -w, -w+1, -1, 0, 1,
+				w-1, w, w+1};
+
+		this.interfaces = new NetworkInterface[0];
+		this.addresses = new int[0];
+		this.trX = new double[0];
+		this.trY = new double[0];
+		this.trVx = new double[0];
+		this.trVy = new double[0];
+		this.trStart = new double[0];
+		this.trEnd = new double[0];
+		this.trRanges = new double[0];
+		this.trVersions = new int[0];
+		this.isOutdated = new boolean[0];
+		this.interfaceCells = new int[0];
+		this.cellVersions = new int[0];
+		this.pairAddresses = new int[0][];
+		this.pairCellVersions = new int[0][];
+		this.pairTrVersions = new int[0][];
+		this.pairIntervals = new double[0][];
+		this.nrofPairs = new int[0];
+		this.nearAddresses = new int[0][];
+		this.nrofNear = new int[0];
+		this.nextStarts = new double[0];
+		this.nextEnds = new double[0];
+		this.isChanged = new boolean[0];
+	}
+
+	/**
+	 * Returns a predictive connectivity grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be at least the largest
+	 * 	radio range)
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static PredictiveConnectivityGrid
+			PredictiveConnectivityGridFactory(int key, double cellSize) {
+		if (gridobjects.containsKey((Integer)key)) {
+			return gridobjects.get((Integer)key);
+		} else {
+			PredictiveConnectivityGrid newgrid =
+				new PredictiveConnectivityGrid((int)Math.ceil(cellSize));
+			gridobjects.put((Integer)key,newgrid);
+			return newgrid;
+		}
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * and starts listening to the movement of its host
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		int address = ni.getAddress();
+
+		if (address >= interfaces.length) {
+			int newLength = Math.max(address + 1, interfaces.length * 2);
+			interfaces = Arrays.copyOf(interfaces, newLength);
+			trX = Arrays.copyOf(trX, newLength);
+			trY = Arrays.copyOf(trY, newLength);
+			trVx = Arrays.copyOf(trVx, newLength);
+			trVy = Arrays.copyOf(trVy, newLength);
+			trStart = Arrays.copyOf(trStart, newLength);
+			trEnd = Arrays.copyOf(trEnd, newLength);
+			trRanges = Arrays.copyOf(trRanges, newLength);
+			trVersions = Arrays.copyOf(trVersions, newLength);
+			isOutdated = Arrays.copyOf(isOutdated, newLength);
+			interfaceCells = Arrays.copyOf(interfaceCells, newLength);
+			cellVersions = Arrays.copyOf(cellVersions, newLength);
+			pairAddresses = Arrays.copyOf(pairAddresses, newLength);
+			pairCellVersions = Arrays.copyOf(pairCellVersions, newLength);
+			pairTrVersions = Arrays.copyOf(pairTrVersions, newLength);
+			pairIntervals = Arrays.copyOf(pairIntervals, newLength);
+			nrofPairs = Arrays.copyOf(nrofPairs, newLength);
+			nearAddresses = Arrays.copyOf(nearAddresses, newLength);
+			nrofNear = Arrays.copyOf(nrofNear, newLength);
+			nextStarts = Arrays.copyOf(nextStarts, newLength);
+			nextEnds = Arrays.copyOf(nextEnds, newLength);
+			isChanged = Arrays.copyOf(isChanged, newLength);
+		}
+		else if (interfaces[address] != null) {
+			return; // already in the grid
+		}
+
+		if (nrofInterfaces == addresses.length) {
+			addresses = Arrays.copyOf(addresses,
+					Math.max(1, nrofInterfaces * 2));
+		}
+
+		interfaces[address] = ni;
+		addresses[nrofInterfaces++] = address;
+		isOutdated[address] = true;
+		interfaceCells[address] = NO_CELL;
+		pairAddresses[address] = new int[EXPECTED_PAIR_COUNT];
+		pairCellVersions[address] = new int[EXPECTED_PAIR_COUNT];
+		pairTrVersions[address] = new int[EXPECTED_PAIR_COUNT * 2];
+		pairIntervals[address] = new double[EXPECTED_PAIR_COUNT * 2];
+		nearAddresses[address] = new int[EXPECTED_PAIR_COUNT];
+		isChanged[address] = true;
+
+		if (ni.getHost() != null) {
+			ni.getHost().addMovementListener(this);
+		}
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks that the interface's trajectory matches its current location
+	 * and searches new pairs for it if it has moved to another cell
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address >= interfaces.length || interfaces[address] != ni) {
+			return;
+		}
+
+		updateTrajectory(address);
+		int cell = cellFromCoord(ni.getLocation());
+		if (cell != interfaceCells[address]) {
+			moveToCell(address, cell);
+		}
+	}
+
+	/**
+	 * Marks the trajectories of the host's interfaces outdated
+	 */
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		for (NetworkInterface ni : host.getInterfaces()) {
+			int address = ni.getAddress();
+			if (address < interfaces.length && interfaces[address] == ni) {
+				isOutdated[address] = true;
+				markChanged(address);
+			}
+		}
+	}
+
+	/**
+	 * Puts the host's interfaces to the cells of the initial location
+	 */
+	public void initialLocation(DTNHost host, Coord location) {
+		newDestination(host, null, 0);
+		for (NetworkInterface ni : host.getInterfaces()) {
+			updateLocation(ni);
+		}
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		for (int i=0; i<nrofInterfaces; i++) {
+			all.add(interfaces[addresses[i]]);
+		}
+		return all;
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are
+	 * predicted to be within range of the interface
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		getNearInterfaces(netinterf, ni);
+		return ni;
+	}
+
+	/**
+	 * Puts all interfaces using the same technology and channel that are
+	 * predicted to be within range of the interface to the given list.
+	 * If none of the pairs of the interface have changed, and no contact
+	 * interval has started or ended, since the last call, the result of the
+	 * last call is returned again. Otherwise the contact intervals whose
+	 * trajectories have changed, or that have already passed, are solved
+	 * again first.
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface netinterf,
+			List<NetworkInterface> result) {
+		result.clear();
+
+		int a = netinterf.getAddress();
+		if (a >= interfaces.length || interfaces[a] != netinterf) {
+			return;
+		}
+		updateLocation(netinterf);
+
+		double now = netinterf.getHost().getMovedTime();
+		if (!isChanged[a] && now < nextStarts[a] && now <= nextEnds[a]) {
+			int[] near = nearAddresses[a];
+			for (int i=0, n = nrofNear[a]; i < n; i++) {
+				result.add(interfaces[near[i]]);
+			}
+			return;
+		}
+
+		int[] others = pairAddresses[a];
+		int[] otherCellVersions = pairCellVersions[a];
+		int[] versions = pairTrVersions[a];
+		double[] intervals = pairIntervals[a];
+		int n = 0;
+		nrofNear[a] = 0;
+		nextStarts[a] = Double.POSITIVE_INFINITY;
+		nextEnds[a] = Double.POSITIVE_INFINITY;
+
+		for (int i=0, size = nrofPairs[a]; i < size; i++) {
+			int b = others[i];
+			if (otherCellVersions[i] != cellVersions[b]) {
+				continue; // the other interface has moved to another cell
+			}
+
+			if (isOutdated[b]) {
+				updateTrajectory(b);
+			}
+			if (versions[2*i] != trVersions[a] ||
+					versions[2*i+1] != trVersions[b] ||
+					now > intervals[2*i+1]) {
+				solve(a, b, now);
+				versions[2*i] = trVersions[a];
+				versions[2*i+1] = trVersions[b];
+				intervals[2*i] = solvedStart;
+				intervals[2*i+1] = solvedEnd;
+			}
+			if (intervals[2*i] <= now) {
+				result.add(interfaces[b]);
+				addNear(a, b);
+				nextEnds[a] = Math.min(nextEnds[a], intervals[2*i+1]);
+			}
+			else {
+				nextStarts[a] = Math.min(nextStarts[a], intervals[2*i]);
+			}
+
+			if (n != i) { // move the pair over the removed ones
+				others[n] = b;
+				otherCellVersions[n] = otherCellVersions[i];
+				versions[2*n] = versions[2*i];
+				versions[2*n+1] = versions[2*i+1];
+				intervals[2*n] = intervals[2*i];
+				intervals[2*n+1] = intervals[2*i+1];
+			}
+			n++;
+		}
+		nrofPairs[a] = n;
+		isChanged[a] = false;
+	}
+
+	/**
+	 * Adds an interface to the within range interfaces of another interface
+	 * @param a Address of the interface whose near interface is added
+	 * @param b Address of the near interface
+	 */
+	private void addNear(int a, int b) {
+		int n = nrofNear[a];
+		if (n == nearAddresses[a].length) {
+			nearAddresses[a] = Arrays.copyOf(nearAddresses[a], n * 2);
+		}
+		nearAddresses[a][n] = b;
+		nrofNear[a] = n + 1;
+	}
+
+	/**
+	 * Marks that the near interfaces of an interface and the interfaces it
+	 * has pairs with need to be searched again
+	 * @param address Address of the interface
+	 */
+	private void markChanged(int address) {
+		isChanged[address] = true;
+		int[] others = pairAddresses[address];
+		for (int i=0, n = nrofPairs[address]; i < n; i++) {
+			isChanged[others[i]] = true;
+		}
+	}
+
+	/**
+	 * Computes the trajectory of an interface again if it's outdated or
+	 * doesn't match the interface's current location or range
+	 * @param address Address of the interface
+	 */
+	private void updateTrajectory(int address) {
+		NetworkInterface ni = interfaces[address];
+		Coord loc = ni.getLocation();
+		double now = ni.getHost().getMovedTime();
+
+		if (!isOutdated[address] &&
+				trRanges[address] == ni.getTransmitRange()) {
+			double t = Math.min(now, trEnd[address]) - trStart[address];
+			if (Math.abs(trX[address] + trVx[address] * t - loc.getX()) <=
+					LOCATION_TOLERANCE &&
+				Math.abs(trY[address] + trVy[address] * t - loc.getY()) <=
+					LOCATION_TOLERANCE) {
+				return; // trajectory is still valid
+			}
+		}
+
+		DTNHost host = ni.getHost();
+		Coord dest = host.getDestination();
+		double speed = host.getSpeed();
+		double distance = dest == null ? 0 : loc.distance(dest);
+
+		trX[address] = loc.getX();
+		trY[address] = loc.getY();
+		trStart[address] = now;
+		trRanges[address] = ni.getTransmitRange();
+		if (distance > 0 && speed > 0 && host.isActive()) {
+			trVx[address] = (dest.getX() - loc.getX()) / distance * speed;
+			trVy[address] = (dest.getY() - loc.getY()) / distance * speed;
+			trEnd[address] = now + distance / speed;
+		}
+		else {
+			trVx[address] = 0;
+			trVy[address] = 0;
+			trEnd[address] = now;
+		}
+		isOutdated[address] = false;
+		trVersions[address]++;
+		markChanged(address);
+	}
+
+	/**
+	 * Moves an interface to another cell and replaces its pairs with pairs
+	 * of the interfaces in and around the new cell. The pairs that the other
+	 * interfaces had with this interface are removed lazily.
+	 * @param a Address of the interface
+	 * @param cell Index of the new cell
+	 */
+	private void moveToCell(int a, int cell) {
+		if (interfaceCells[a] != NO_CELL) {
+			removeFromCell(a, interfaceCells[a]);
+		}
+		addToCell(a, cell);
+		interfaceCells[a] = cell;
+		cellVersions[a]++;
+		nrofPairs[a] = 0;
+		isChanged[a] = true;
+
+		double now = interfaces[a].getHost().getMovedTime();
+		for (int offset : neighborOffsets) {
+			int[] members = cellMembers[cell + offset];
+			for (int i=0, n = cellSizes[cell + offset]; i < n; i++) {
+				int b = members[i];
+				if (b == a) {
+					continue;
+				}
+				updateTrajectory(b);
+				solve(a, b, now);
+				addPair(a, b);
+				addPair(b, a);
+				isChanged[b] = true;
+			}
+		}
+	}
+
+	/**
+	 * Adds a pair with the last solved interval to an interface's pairs
+	 * @param a Address of the interface whose pair is added
+	 * @param b Address of the other interface of the pair
+	 */
+	private void addPair(int a, int b) {
+		int n = nrofPairs[a];
+		if (n == pairAddresses[a].length) {
+			pairAddresses[a] = Arrays.copyOf(pairAddresses[a], n * 2);
+			pairCellVersions[a] = Arrays.copyOf(pairCellVersions[a], n * 2);
+			pairTrVersions[a] = Arrays.copyOf(pairTrVersions[a], n * 4);
+			pairIntervals[a] = Arrays.copyOf(pairIntervals[a], n * 4);
+		}
+		pairAddresses[a][n] = b;
+		pairCellVersions[a][n] = cellVersions[b];
+		pairTrVersions[a][2*n] = trVersions[a];
+		pairTrVersions[a][2*n+1] = trVersions[b];
+		pairIntervals[a][2*n] = solvedStart;
+		pairIntervals[a][2*n+1] = solvedEnd;
+		nrofPairs[a] = n + 1;
+	}
+
+	/**
+	 * Solves the first time interval, starting from the given time, when
+	 * two interfaces are within range of each other and stores it to
+	 * {@link #solvedStart} and {@link #solvedEnd}. The relative movement
+	 * of the interfaces is linear between the end times of the
+	 * trajectories, so the interval is found by solving the quadratic
+	 * distance equation of every linear piece.
+	 * @param a Address of the first interface
+	 * @param b Address of the second interface
+	 * @param now The time to start from
+	 */
+	private void solve(int a, int b, double now) {
+		double range = Math.min(trRanges[a], trRanges[b]) + RANGE_SLACK;
+		double r2 = range * range;
+		double firstEnd = Math.max(now, Math.min(trEnd[a], trEnd[b]));
+		double lastEnd = Math.max(now, Math.max(trEnd[a], trEnd[b]));
+
+		solvedStart = Double.POSITIVE_INFINITY;
+		solvedEnd = Double.POSITIVE_INFINITY;
+
+		for (int piece=0; piece<3; piece++) {
+			double from = piece == 0 ? now : (piece == 1 ? firstEnd : lastEnd);
+			double to = piece == 0 ? firstEnd :
+				(piece == 1 ? lastEnd : Double.POSITIVE_INFINITY);
+			if (to <= from && piece < 2) {
+				continue; // empty piece
+			}
+
+			/* relative location at the start of the piece and the relative
+			 * velocity during it */
+			double ta = Math.min(from, trEnd[a]) - trStart[a];
+			double tb = Math.min(from, trEnd[b]) - trStart[b];
+			double dx = trX[a] + trVx[a] * ta - trX[b] - trVx[b] * tb;
+			double dy = trY[a] + trVy[a] * ta - trY[b] - trVy[b] * tb;
+			double dvx = (from < trEnd[a] ? trVx[a] : 0) -
+				(from < trEnd[b] ? trVx[b] : 0);
+			double dvy = (from < trEnd[a] ? trVy[a] : 0) -
+				(from < trEnd[b] ? trVy[b] : 0);
+
+			/* |d + dv*t|^2 <= r^2 for t in [u1, u2] */
+			double qa = dvx*dvx + dvy*dvy;
+			double qb = 2 * (dx*dvx + dy*dvy);
+			double qc = dx*dx + dy*dy - r2;
+			double u1 = Double.POSITIVE_INFINITY;
+			double u2 = Double.NEGATIVE_INFINITY;
+			if (qa == 0) {
+				if (qc <= 0) {
+					u1 = 0;
+					u2 = Double.POSITIVE_INFINITY;
+				}
+			}
+			else {
+				double disc = qb*qb - 4*qa*qc;
+				if (disc >= 0) {
+					/* numerically stable roots also when the relative
+					 * velocity is almost zero */
+					double q = -0.5 * (qb + Math.copySign(Math.sqrt(disc), qb));
+					double root1 = q / qa;
+					double root2 = q != 0 ? qc / q : root1;
+					u1 = Math.max(0, Math.min(root1, root2));
+					u2 = Math.max(root1, root2);
+				}
+			}
+
+			double s = from + u1;
+			double e = Math.min(to, from + u2);
+			if (s > e) { // not within range during this piece
+				if (solvedStart != Double.POSITIVE_INFINITY) {
+					return; // interval ended at the previous piece
+				}
+				continue;
+			}
+			if (solvedStart == Double.POSITIVE_INFINITY) {
+				solvedStart = s;
+			}
+			else if (u1 > 0) {
+				return; // not continuous with the previous piece
+			}
+			solvedEnd = e;
+			if (e < to) {
+				return; // goes out of range during this piece
+			}
+		}
+	}
+
+	/**
+	 * Adds an interface to a cell
+	 * @param address Address of the interface
+	 * @param cell Index of the cell
+	 */
+	private void addToCell(int address, int cell) {
+		int[] members = cellMembers[cell];
+		int n = cellSizes[cell];
+		if (members == null) {
+			members = new int[EXPECTED_CELL_SIZE];
+			cellMembers[cell] = members;
+		}
+		else if (n == members.length) {
+			members = Arrays.copyOf(members, n * 2);
+			cellMembers[cell] = members;
+		}
+		members[n] = address;
+		cellSizes[cell] = n + 1;
+	}
+
+	/**
+	 * Removes an interface from a cell keeping the order of the other
+	 * interfaces in the cell
+	 * @param address Address of the interface
+	 * @param cell Index of the cell
+	 */
+	private void removeFromCell(int address, int cell) {
+		int[] members = cellMembers[cell];
+		int n = cellSizes[cell];
+		for (int i=0; i<n; i++) {
+			if (members[i] == address) {
+				System.arraycopy(members, i + 1, members, i, n - i - 1);
+				cellSizes[cell] = n - 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Get the index of the cell having the specific coordinates
+	 * @param c Coordinates
+	 * @return The cell's index
+	 */
+	private int cellFromCoord(Coord c) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
+		c + " is out of world's bounds";
+
+		return row * (cols+2) + col;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
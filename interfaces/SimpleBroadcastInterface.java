@@ -4,13 +4,13 @@
  */
 package interfaces;
 
-import java.util.Collection;
 
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
 import core.Settings;
+import core.SimClock;
 import static java.lang.Double.POSITIVE_INFINITY;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -52,7 +52,8 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				&& anotherInterface.getHost().isActive() 
 				&& isWithinRange(anotherInterface) 
 				&& !isConnected(anotherInterface)
-				&& (this != anotherInterface)) {
+				&& (this != anotherInterface)
+				&& !isBlacklisted(anotherInterface)) {
                          
 			// new contact within range
 			// connection speed is the lower one of the two speeds 
@@ -99,33 +100,37 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			// all connections should be up at this stage
 			assert con.isUp() : "Connection " + con + " was down!";
                         
-                        int f = 0;
-                        //this.host.MaliciousNodes[0] = anotherInterface.getHost();
-                        
-                        for(DTNHost key: this.host.MaliciousInfo.keySet())
-                        {
-                            if(anotherInterface.getHost().equals(key) && (int)this.host.MaliciousInfo.get(key) >= anotherInterface.getHost().counter )
-                                f=1;
-                        }
-                        if (!isWithinRange(anotherInterface) || f == 1  ) {
+                        if (!isWithinRange(anotherInterface) || 
+                        		isBlacklisted(anotherInterface)) {
 				disconnect(con,anotherInterface);
-				connections.remove(i);
+				removeConnection(con, anotherInterface);
 			}
 			else {
 				i++;
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
+		optimizer.getNearInterfaces(this, nearInterfaces);
+		for (int i=0, n = nearInterfaces.size(); i < n; i++) {
 			
-                        connect(i);
+                        connect(nearInterfaces.get(i));
                       
 		}
 	
           }
 
+	/**
+	 * Returns the current time if some connection is to a blacklisted host
+	 * (those connections are torn down at the next update).
+	 */
+	@Override
+	public double getNextEventTime() {
+		if (hasBlacklistedConnection()) {
+			return SimClock.getTime();
+		}
+		return super.getNextEventTime();
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active 
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package misbehaviour;
+
+import core.DTNHost;
+import core.Settings;
+
+/**
+ * Misbehaviour model where the hosts accept messages from other hosts but
+ * drop all of them instead of forwarding them (black hole attack).
+ * Messages that are delivered to the hosts themselves aren't affected.
+ */
+public class BlackHoleModel extends MisbehaviourModel {
+
+	/**
+	 * Constructor. Creates a new model based on the given settings.
+	 * @param s The settings object
+	 */
+	public BlackHoleModel(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param m The model prototype
+	 */
+	protected BlackHoleModel(BlackHoleModel m) {
+		super(m);
+	}
+
+	@Override
+	public void messageReceived(DTNHost host, String id, DTNHost from) {
+		if (host.getRouter().getMessage(id) != null && isAttacking() &&
+				dropReceived()) {
+			host.deleteMessage(id, true);
+		}
+	}
+
+	/**
+	 * Decides whether a received message is dropped. This implementation
+	 * always returns true.
+	 * @return True if the message should be dropped
+	 */
+	protected boolean dropReceived() {
+		return true;
+	}
+
+	@Override
+	public MisbehaviourModel replicate() {
+		return new BlackHoleModel(this);
+	}
+}
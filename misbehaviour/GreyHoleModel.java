@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package misbehaviour;
+
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Misbehaviour model where the hosts drop each message they receive from
+ * other hosts with a probability of {@link #DROP_PROB_S} (grey hole
+ * attack). All the hosts of the model draw from the same random number
+ * generator.
+ */
+public class GreyHoleModel extends BlackHoleModel {
+	/** Probability of dropping a received message -setting id ({@value}).
+	 * Must be between 0 and 1. */
+	public static final String DROP_PROB_S = "dropProb";
+	/** Seed of the random number generator -setting id ({@value}).
+	 * Default is 0. */
+	public static final String RNG_SEED_S = "rngSeed";
+
+	private double dropProb;
+	private Random rng;
+
+	/**
+	 * Constructor. Creates a new model based on the given settings.
+	 * @param s The settings object
+	 */
+	public GreyHoleModel(Settings s) {
+		super(s);
+		this.dropProb = s.getDouble(DROP_PROB_S);
+		if (this.dropProb < 0 || this.dropProb > 1) {
+			throw new SettingsError("Invalid value (" + this.dropProb +
+					") for setting " + s.getFullPropertyName(DROP_PROB_S));
+		}
+		this.rng = new Random(s.contains(RNG_SEED_S) ?
+				s.getInt(RNG_SEED_S) : 0);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param m The model prototype
+	 */
+	protected GreyHoleModel(GreyHoleModel m) {
+		super(m);
+		this.dropProb = m.dropProb;
+		this.rng = m.rng;
+	}
+
+	@Override
+	protected boolean dropReceived() {
+		return this.rng.nextDouble() < this.dropProb;
+	}
+
+	@Override
+	public MisbehaviourModel replicate() {
+		return new GreyHoleModel(this);
+	}
+}
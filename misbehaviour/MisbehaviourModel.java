@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package misbehaviour;
+
+import java.util.BitSet;
+
+import movement.ActivenessHandler;
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Superclass for misbehaviour models. A misbehaviour model makes the hosts
+ * it is given to attack the network, e.g., by dropping messages that they
+ * should forward.
+ * <P>Models are configured per group with the group's
+ * {@link core.SimScenario#MISBEHAVIOUR_S} setting, which gives the namespace
+ * of the model's settings. All hosts of the group misbehave unless the
+ * addresses of the misbehaving hosts are limited with the
+ * {@link #HOSTS_S} and {@link #HOST_STEP_S} settings. The attacks can be
+ * turned on and off with the {@link ActivenessHandler#ACTIVE_TIMES_S}
+ * setting of the model's namespace (by default the hosts attack all the
+ * time).</P>
+ * <P>The addresses of the misbehaving hosts are stored in a bit set when the
+ * model is created and only those hosts get a replicate of the model
+ * (see {@link #replicate()}), so honest hosts don't spend any time for
+ * misbehaviour models during the simulation.</P>
+ */
+public abstract class MisbehaviourModel {
+	/** Misbehaviour model class -setting id ({@value}). Name of a class in
+	 * the misbehaviour package. */
+	public static final String TYPE_S = "type";
+	/** Misbehaving host address range -setting id ({@value}).
+	 * The lower bound is inclusive and upper bound exclusive. Default is all
+	 * the hosts of the group. */
+	public static final String HOSTS_S = "hosts";
+	/** Misbehaving host address step -setting id ({@value}). Every
+	 * hostStep:th address of the {@link #HOSTS_S} range misbehaves.
+	 * Default is 1. */
+	public static final String HOST_STEP_S = "hostStep";
+
+	/** addresses of the misbehaving hosts or null for all hosts */
+	private BitSet members;
+	/** tells when the hosts are attacking */
+	private ActivenessHandler schedule;
+
+	/**
+	 * Constructor. Creates a new model based on the settings in the given
+	 * Settings object.
+	 * @param s The settings object
+	 */
+	public MisbehaviourModel(Settings s) {
+		if (s.contains(HOSTS_S)) {
+			int[] range = s.getCsvInts(HOSTS_S, 2);
+			int step = 1;
+			s.assertValidRange(range, HOSTS_S);
+			if (s.contains(HOST_STEP_S)) {
+				step = s.getInt(HOST_STEP_S);
+				if (step < 1) {
+					throw new SettingsError("Invalid value (" + step +
+							") for setting " +
+							s.getFullPropertyName(HOST_STEP_S));
+				}
+			}
+
+			this.members = new BitSet(range[1]);
+			for (int i = range[0]; i < range[1]; i += step) {
+				this.members.set(i);
+			}
+		}
+		this.schedule = new ActivenessHandler(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param m The model prototype where setting values are copied from
+	 */
+	protected MisbehaviourModel(MisbehaviourModel m) {
+		this.members = m.members;
+		this.schedule = m.schedule;
+	}
+
+	/**
+	 * Returns true if the host with the given address should misbehave
+	 * @param address Address of the host
+	 * @return True if the host is one of the misbehaving hosts
+	 */
+	public boolean isMember(int address) {
+		return this.members == null || this.members.get(address);
+	}
+
+	/**
+	 * Returns true if the hosts are attacking at the moment
+	 * @return True if the attacks are on
+	 */
+	public boolean isAttacking() {
+		return this.schedule.isActive();
+	}
+
+	/**
+	 * Returns the next simulation time when the attacks may be turned on or
+	 * off
+	 * @return The time of the next change or Double.POSITIVE_INFINITY if
+	 * the attacks aren't turned on or off anymore
+	 */
+	public double getNextScheduleChange() {
+		return this.schedule.getNextChangeTime();
+	}
+
+	/**
+	 * Called every time the misbehaving host is updated. This implementation
+	 * does nothing.
+	 * @param host The host
+	 */
+	public void update(DTNHost host) { }
+
+	/**
+	 * Called when the misbehaving host has received a message from another
+	 * host. This implementation does nothing.
+	 * @param host The host
+	 * @param id Identifier of the message
+	 * @param from The host the message was received from
+	 */
+	public void messageReceived(DTNHost host, String id, DTNHost from) { }
+
+	/**
+	 * Returns the earliest simulation time when {@link #update(DTNHost)}
+	 * may change the state of the host if no events happen in between. This
+	 * implementation returns Double.POSITIVE_INFINITY.
+	 * @param host The host
+	 * @return The next time when the host needs to be updated
+	 */
+	public double getNextEventTime(DTNHost host) {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Creates a replicate of this model for a misbehaving host. The
+	 * replicate has the same settings as this model.
+	 * @return A replicate of this model
+	 */
+	public abstract MisbehaviourModel replicate();
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
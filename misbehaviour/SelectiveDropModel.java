@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package misbehaviour;
+
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Misbehaviour model where the hosts drop messages whenever they have more
+ * than {@link #BUFFER_LIMIT_S} messages in their buffer. The first
+ * {@link #NROF_DROPS_S} messages of the buffer (in the order of the
+ * router's message collection) are dropped at every update until the
+ * buffer is small enough.
+ */
+public class SelectiveDropModel extends MisbehaviourModel {
+	/** Maximum number of messages that are kept without dropping
+	 * -setting id ({@value}). Default is 4. */
+	public static final String BUFFER_LIMIT_S = "bufferLimit";
+	/** How many messages are dropped at a time -setting id ({@value}).
+	 * Default is 2. */
+	public static final String NROF_DROPS_S = "nrofDrops";
+
+	private int bufferLimit;
+	private int nrofDrops;
+
+	/**
+	 * Constructor. Creates a new model based on the given settings.
+	 * @param s The settings object
+	 */
+	public SelectiveDropModel(Settings s) {
+		super(s);
+		this.bufferLimit = s.contains(BUFFER_LIMIT_S) ?
+				s.getInt(BUFFER_LIMIT_S) : 4;
+		this.nrofDrops = s.contains(NROF_DROPS_S) ? s.getInt(NROF_DROPS_S) : 2;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param m The model prototype
+	 */
+	protected SelectiveDropModel(SelectiveDropModel m) {
+		super(m);
+		this.bufferLimit = m.bufferLimit;
+		this.nrofDrops = m.nrofDrops;
+	}
+
+	@Override
+	public void update(DTNHost host) {
+		if (host.getNrofMessages() <= this.bufferLimit || !isAttacking()) {
+			return;
+		}
+
+		String[] ids = new String[this.nrofDrops];
+		int n = 0;
+		for (Message m : host.getMessageCollection()) {
+			if (n == ids.length) {
+				break;
+			}
+			ids[n++] = m.getId();
+		}
+		for (int i = 0; i < n; i++) {
+			host.deleteMessage(ids[i], true);
+		}
+	}
+
+	@Override
+	public double getNextEventTime(DTNHost host) {
+		if (host.getNrofMessages() <= this.bufferLimit) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return isAttacking() ? SimClock.getTime() : getNextScheduleChange();
+	}
+
+	@Override
+	public MisbehaviourModel replicate() {
+		return new SelectiveDropModel(this);
+	}
+}
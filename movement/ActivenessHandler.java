@@ -94,6 +94,27 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the next simulation time when the activeness may change
+	 * @return The time of the next change or Double.POSITIVE_INFINITY if 
+	 * the activeness doesn't change anymore
+	 */
+	public double getNextChangeTime() {
+		if (curRange == null) {
+			return Double.POSITIVE_INFINITY; // always or never active
+		}
+
+		double time = SimClock.getTime();
+
+		if (time < curRange.start) {
+			return curRange.start;
+		}
+		if (!curRange.isOut(time)) {
+			return curRange.end;
+		}
+		return time; // time for the next time range
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
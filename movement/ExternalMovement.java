@@ -154,6 +154,11 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	@Override
+	public double getNextActivenessChange() {
+		return Double.POSITIVE_INFINITY; // activeness is set at creation
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
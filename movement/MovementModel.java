@@ -210,6 +210,15 @@ public abstract class MovementModel {
 	public boolean isActive() {
 		return ah.isActive();
 	}
+
+	/**
+	 * Returns the next simulation time when the node's activeness may change
+	 * @return The time of the next activeness change or
+	 * Double.POSITIVE_INFINITY if the activeness doesn't change anymore
+	 */
+	public double getNextActivenessChange() {
+		return ah.getNextChangeTime();
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * Writes report lines to a print writer in a background thread. The lines
+ * are passed to the thread through a bounded queue, so writing a line
+ * blocks only if the queue is full. The thread writes all the lines that
+ * are in the queue at a time as one batch and flushes the output once per
+ * batch.
+ */
+public class AsyncReportWriter {
+	/** marker of the end of the lines (compared by reference) */
+	private static final String END = new String("END");
+
+	private BlockingQueue<String> queue;
+	private PrintWriter out;
+	private Thread thread;
+
+	/**
+	 * Creates a new writer and starts its thread
+	 * @param out The print writer where the lines are written to
+	 * @param capacity How many lines can be waiting for writing
+	 */
+	public AsyncReportWriter(PrintWriter out, int capacity) {
+		this.out = out;
+		this.queue = new ArrayBlockingQueue<String>(capacity);
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				writeLines();
+			}
+		}, "ONE-report-writer");
+		this.thread.setDaemon(true); // don't prevent the VM from exiting
+		this.thread.start();
+	}
+
+	/**
+	 * Queues a line for writing
+	 * @param line The line to write
+	 */
+	public void write(String line) {
+		put(line);
+	}
+
+	/**
+	 * Writes all the queued lines and stops the thread. The print writer is
+	 * not closed. No lines can be written after this.
+	 */
+	public void close() {
+		put(END);
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while closing report writer", e);
+		}
+	}
+
+	private void put(String line) {
+		try {
+			this.queue.put(line);
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while writing report", e);
+		}
+	}
+
+	/**
+	 * Writes the queued lines in batches until the end marker is found
+	 */
+	private void writeLines() {
+		List<String> batch = new ArrayList<String>();
+		try {
+			while (true) {
+				batch.add(this.queue.take());
+				this.queue.drainTo(batch);
+				for (String line : batch) {
+					if (line == END) {
+						this.out.flush();
+						return;
+					}
+					this.out.println(line);
+				}
+				this.out.flush();
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			this.out.flush(); // the lines in the queue are lost
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import core.DTNHost;
+import core.DetectionListener;
+import core.Settings;
+
+/**
+ * Reports the hosts that are found malicious (see
+ * {@link core.ReputationTable}), when they were found and by which host.
+ * The last line contains the number of found hosts and the average time
+ * when they were found. The lines are written in a background thread (see
+ * {@link AsyncReportWriter}). The output file can be set with the
+ * {@link Report#OUTPUT_SETTING} setting as for all reports.
+ * For output syntax, see {@link #HEADER}.
+ */
+public class MaliciousHostReport extends Report implements DetectionListener {
+	public static final String HEADER = "# time  host  detector";
+	/** Queue size -setting id ({@value}). Defines how many lines can be
+	 * waiting to be written. Default is {@value #DEF_QUEUE_SIZE}. */
+	public static final String QUEUE_SIZE_S = "queueSize";
+	/** Default queue size */
+	public static final int DEF_QUEUE_SIZE = 1024;
+
+	private int queueSize;
+	private AsyncReportWriter writer;
+	private List<Double> detectionTimes;
+
+	/**
+	 * Constructor.
+	 */
+	public MaliciousHostReport() {
+		Settings settings = getSettings();
+		if (settings.contains(QUEUE_SIZE_S)) {
+			this.queueSize = settings.getInt(QUEUE_SIZE_S);
+		}
+		else {
+			this.queueSize = DEF_QUEUE_SIZE;
+		}
+
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.writer = new AsyncReportWriter(this.out, this.queueSize);
+		this.detectionTimes = new ArrayList<Double>();
+		this.writer.write(HEADER);
+	}
+
+	public void maliciousHostFound(DTNHost host, DTNHost detector) {
+		if (isWarmup()) {
+			return;
+		}
+		this.detectionTimes.add(getSimTime());
+		this.writer.write(format(getSimTime()) + " " + host + " " + detector);
+	}
+
+	@Override
+	public void done() {
+		this.writer.write("# found: " + this.detectionTimes.size() + 
+				" average time: " + getAverage(this.detectionTimes));
+		this.writer.close();
+		super.done();
+	}
+}
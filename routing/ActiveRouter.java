@@ -5,25 +5,27 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.TreeSet;
 
+import routing.buffer.BufferPolicy;
+import routing.buffer.DropOldestPolicy;
 import core.Connection;
 import core.DTNHost;
+import core.IntObjectMap;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import core.Tuple;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
- * {@link #getOldestMessage(boolean)}) and watching of sending connections (see
+ * {@link #getOldestMessage(boolean)}), dropping of messages with a 
+ * {@link BufferPolicy} and watching of sending connections (see
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
@@ -34,15 +36,57 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Buffer policy -setting id ({@value}). Name of the 
+	 * {@link BufferPolicy} class (in package {@value #BUFFER_POLICY_PACKAGE})
+	 * that selects which messages are dropped when the buffer is full. 
+	 * Default depends on the router (drop oldest for most routers). */
+	public static final String BUFFER_POLICY_S = "bufferPolicy";
+	/** package where to look for buffer policy classes */
+	public static final String BUFFER_POLICY_PACKAGE = "routing.buffer.";
+	/** policy selecting the messages to drop (null in a prototype that 
+	 * uses the default policy) */
+	private BufferPolicy bufferPolicy;
+	/** Concurrent transfers -setting id ({@value}). Boolean valued.
+	 * If set to true, the router can send and receive messages using 
+	 * several connections at the same time, as many as the transfer slots 
+	 * of the network interfaces allow (see 
+	 * {@link core.NetworkInterface#TRANSFER_SLOTS_S}). Otherwise only one 
+	 * connection at a time is used. Default=false. */
+	public static final String MULTI_TRANSFER_S = "multiTransfer";
+	/** can the router use several connections at the same time */
+	protected boolean multiTransfer;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
+	/** Orders messages by their expiry times (and IDs) */
+	private static final Comparator<Message> EXPIRY_ORDER = 
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			int c = Double.compare(m1.getExpiryTime(), m2.getExpiryTime());
+			if (c != 0) {
+				return c;
+			}
+			return m1.getId().compareTo(m2.getId());
+		}
+	};
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** buffered messages with a finite TTL in the order of expiry times */
+	private TreeSet<Message> expiryOrder;
+	/** how long (seconds) before its expiry time the TTL of a message drops
+	 * to zero; {@link Message#getTtl()} is rounded down to whole minutes */
+	private static final int TTL_GRANULARITY = 60;
+	/** buffered messages by the address of their destination host */
+	private IntObjectMap<List<Message>> messagesByDestination;
+	/** list reused for the results of {@link #getMessagesForConnected()} */
+	private List<Tuple<Message, Connection>> forConnectedTuples;
+	/** tuples reused for the results of {@link #getMessagesForConnected()}
+	 * (in the order they were created, the results may be sorted) */
+	private List<Tuple<Message, Connection>> tuplePool;
+	/** sim time of the last update */
+	private double lastUpdateTime;
+	/** sim time when the latest transfer was started */
+	private double lastTransferStartTime;
 	
 
 	/**
@@ -59,6 +103,15 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		if (s.contains(MULTI_TRANSFER_S)) {
+			this.multiTransfer = s.getBoolean(MULTI_TRANSFER_S);
+		}
+		
+		if (s.contains(BUFFER_POLICY_S)) {
+			this.bufferPolicy = (BufferPolicy)s.createIntializedObject(
+					BUFFER_POLICY_PACKAGE + s.getSetting(BUFFER_POLICY_S));
+		}
 	}
 	
 	/**
@@ -68,13 +121,95 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.multiTransfer = r.multiTransfer;
+		if (r.bufferPolicy != null) {
+			this.bufferPolicy = r.bufferPolicy.replicate();
+		}
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.expiryOrder = new TreeSet<Message>(EXPIRY_ORDER);
+		this.messagesByDestination = new IntObjectMap<List<Message>>();
+		this.forConnectedTuples = new ArrayList<Tuple<Message, Connection>>();
+		this.tuplePool = new ArrayList<Tuple<Message, Connection>>();
+		this.lastUpdateTime = Double.NEGATIVE_INFINITY;
+		this.lastTransferStartTime = Double.NEGATIVE_INFINITY;
+		if (this.bufferPolicy == null) {
+			this.bufferPolicy = createDefaultBufferPolicy();
+		}
+		this.bufferPolicy.init(this);
+	}
+	
+	/**
+	 * Creates the buffer policy that is used if no policy is defined in
+	 * the settings. This version returns a {@link DropOldestPolicy} but 
+	 * subclasses may want to override this.
+	 * @return A new buffer policy
+	 */
+	protected BufferPolicy createDefaultBufferPolicy() {
+		return new DropOldestPolicy();
+	}
+	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getHandle());
+		super.addToMessages(m, newMessage);
+		if (old != null) {
+			this.bufferPolicy.messageRemoved(old);
+			this.expiryOrder.remove(old);
+			removeFromDestinationIndex(old);
+		}
+		this.bufferPolicy.messageAdded(m);
+		if (m.getExpiryTime() != Double.POSITIVE_INFINITY) {
+			this.expiryOrder.add(m);
+		}
+		
+		int to = m.getTo().getAddress();
+		List<Message> msgs = this.messagesByDestination.get(to);
+		if (msgs == null) {
+			msgs = new ArrayList<Message>(2);
+			this.messagesByDestination.put(to, msgs);
+		}
+		msgs.add(m);
+	}
+	
+	@Override
+	protected Message removeFromMessages(int handle) {
+		Message m = super.removeFromMessages(handle);
+		if (m != null) {
+			this.bufferPolicy.messageRemoved(m);
+			this.expiryOrder.remove(m);
+			removeFromDestinationIndex(m);
+		}
+		return m;
+	}
+	
+	/**
+	 * Removes a message from the destination index
+	 * @param m The message to remove
+	 */
+	private void removeFromDestinationIndex(Message m) {
+		int to = m.getTo().getAddress();
+		List<Message> msgs = this.messagesByDestination.get(to);
+		msgs.remove(m);
+		if (msgs.isEmpty()) {
+			this.messagesByDestination.remove(to);
+		}
+	}
+	
+	/**
+	 * Returns the buffered messages whose final recipient is the given host.
+	 * The returned list must not be modified and it changes when messages
+	 * are added to or removed from the buffer.
+	 * @param to The final recipient
+	 * @return The messages to the host (in the order they were added to 
+	 * the buffer) or null if there are no such messages
+	 */
+	protected List<Message> getMessagesTo(DTNHost to) {
+		return this.messagesByDestination.get(to.getAddress());
 	}
 	
 	/**
@@ -90,16 +225,17 @@ public abstract class ActiveRouter extends MessageRouter {
 			return false;
 		}
 		
-		DTNHost other = con.getOtherNode(getHost());
+		List<Message> msgs = getMessagesTo(con.getOtherNode(getHost()));
+		if (msgs == null) {
+			return false;
+		}
+		
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
+		ArrayList<Message> temp = new ArrayList<Message>(msgs);
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -162,23 +298,39 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
 		
-		if (!con.isReadyForTransfer()) {
+		if (!canUseConnection(con)) {
 			return TRY_LATER_BUSY;
 		}
 		
 		retVal = con.startTransfer(getHost(), m);
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
+			this.lastTransferStartTime = SimClock.getTime();
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD && 
 				m.getTo() == con.getOtherNode(this.getHost())) {
 			/* final recipient has already received the msg -> delete it */
-			this.deleteMessage(m.getId(), false);
+			this.deleteMessage(m.getHandle(), false);
 		}
 		
 		return retVal;
 	}
 	
+	/**
+	 * Returns true if a new transfer can be started using the connection,
+	 * i.e., the connection is ready for a transfer and, if the router uses 
+	 * several connections at the same time, the interfaces at both ends 
+	 * of it have a free transfer slot.
+	 * @param con The connection to check
+	 * @return True if a transfer can be started using the connection
+	 */
+	protected boolean canUseConnection(Connection con) {
+		if (!con.isReadyForTransfer()) {
+			return false;
+		}
+		return !this.multiTransfer || con.hasFreeTransferSlots();
+	}
+	
 	/**
 	 * Makes rudimentary checks (that we have at least one message and one
 	 * connection) about can this router start transfer.
@@ -209,10 +361,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected int checkReceiving(Message m) {
 		if (isTransferring()) {
-			return TRY_LATER_BUSY; // only one connection at a time
+			return TRY_LATER_BUSY; // no connection available for receiving
+		}
+		
+		if (this.multiTransfer && isIncomingMessage(m.getId())) {
+			return TRY_LATER_BUSY; // receiving it using another connection
 		}
 	
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ){
+		if (hasSeenMessage(m)) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -230,7 +386,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/** 
-	 * Removes messages from the buffer (oldest first) until
+	 * Removes messages from the buffer (in the order defined by the buffer
+	 * policy) until
 	 * there's enough space for the new message.
 	 * @param size Size of the new message 
 	 * transferred, the transfer is aborted before message is removed
@@ -251,7 +408,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			}			
 			
 			/* delete message from the buffer as "drop" */
-			deleteMessage(m.getId(), true);
+			deleteMessage(m.getHandle(), true);
 			freeBuffer += m.getSize();
 		}
 		
@@ -259,16 +416,56 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL is zero or less, except the ones that are
+	 * being sent (those are dropped after the transfer has ended). Only
+	 * the messages whose TTL runs out during the next minute (in the order 
+	 * of their expiry times) are checked.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		List<Message> expired = null;
+		double now = SimClock.getTime();
+		
+		for (Message m : this.expiryOrder) {
+			if (m.getExpiryTime() - TTL_GRANULARITY > now) {
+				break; // TTL of this and the following ones is over 0
+			}
+			if (m.getTtl() <= 0 && !isSending(m.getHandle())) {
+				if (expired == null) {
+					expired = new ArrayList<Message>();
+				}
+				expired.add(m);
+			}
+		}
+		
+		if (expired != null) {
+			for (Message m : expired) {
+				deleteMessage(m.getHandle(), true);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the simulation time when the TTL of the next buffered message
+	 * drops to zero (one minute before its expiry time), or the current 
+	 * time if there is a message that has expired but hasn't been dropped
+	 * yet, excluding the ones that are being sent. 
+	 * @return The time of the next TTL expiry or Double.POSITIVE_INFINITY 
+	 * if no buffered message has a finite TTL
+	 */
+	private double getNextExpiryTime() {
+		double now = SimClock.getTime();
+		
+		for (Message m : this.expiryOrder) {
+			double time = m.getExpiryTime() - TTL_GRANULARITY;
+			if (time > now) {
+				return time;
+			}
+			if (m.getTtl() > 0 || !isSending(m.getHandle())) {
+				return now;
 			}
 		}
+		
+		return Double.POSITIVE_INFINITY;
 	}
 	
 	/**
@@ -284,54 +481,55 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the message in the message buffer that should be dropped next
+	 * according to the buffer policy (by default the oldest message by 
+	 * receive time) that is not being sent if excludeMsgBeingSent is true.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * being sent from the check (i.e. if the next message to drop is
+	 * being sent, the following message is returned)
+	 * @return The message to drop or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
-		}
-		
-		return oldest;
+		return this.bufferPolicy.getMessageToDrop(excludeMsgBeingSent);
 	}
 	
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
-	 * recipient is some host that we're connected to at the moment.
+	 * recipient is some host that we're connected to at the moment. The
+	 * messages are looked up by the addresses of the connected hosts. 
+	 * <b>Note:</b> the same list object, and the same tuple objects, are 
+	 * reused on the next call, so copies should be made if the list or the
+	 * tuples are needed after that.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
-		if (getNrofMessages() == 0 || getConnections().size() == 0) {
-			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0); 
+		List<Tuple<Message, Connection>> forTuples = this.forConnectedTuples;
+		List<Tuple<Message, Connection>> pool = this.tuplePool;
+		forTuples.clear();
+		
+		if (getNrofMessages() == 0) {
+			return forTuples; // no messages -> empty list
 		}
 
-		List<Tuple<Message, Connection>> forTuples = 
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
+		for (Connection con : getConnections()) {
+			List<Message> msgs = getMessagesTo(con.getOtherNode(getHost()));
+			if (msgs == null) {
+				continue;
+			}
+			for (int i=0, n=msgs.size(); i<n; i++) {
+				int nrofTuples = forTuples.size();
+				Tuple<Message, Connection> t;
+				if (nrofTuples < pool.size()) {
+					t = pool.get(nrofTuples);
+					t.set(msgs.get(i), con);
 				}
+				else {
+					t = new Tuple<Message, Connection>(msgs.get(i), con);
+					pool.add(t);
+				}
+				forTuples.add(t);
 			}
 		}
 		
@@ -342,9 +540,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Tries to send messages for the connections that are mentioned
 	 * in the Tuples in the order they are in the list until one of
 	 * the connections starts transferring or all tuples have been tried.
+	 * If the router can use several connections at the same time, all 
+	 * tuples are tried so that every free connection can start a transfer.
 	 * @param tuples The tuples to try
-	 * @return The tuple whose connection accepted the message or null if
-	 * none of the connections accepted the message that was meant for them.
+	 * @return The (first) tuple whose connection accepted the message or 
+	 * null if none of the connections accepted the message that was meant 
+	 * for them.
 	 */
 	protected Tuple<Message, Connection> tryMessagesForConnected(
 			List<Tuple<Message, Connection>> tuples) {
@@ -352,15 +553,21 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 		
+		Tuple<Message, Connection> first = null;
 		for (Tuple<Message, Connection> t : tuples) {
 			Message m = t.getKey();
 			Connection con = t.getValue();
 			if (startTransfer(m, con) == RCV_OK) {
-				return t;
+				if (!this.multiTransfer) {
+					return t;
+				}
+				if (first == null) {
+					first = t;
+				}
 			}
 		}
 		
-		return null;
+		return first;
 	}
 	
 	 /**
@@ -391,32 +598,41 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * are first iterated in the order they are in the list and for every
 	 * connection, the messages are tried in the order they are in the list.
 	 * Once an accepting connection is found, no other connections or messages
-	 * are tried.
+	 * are tried (unless the router can use several connections at the 
+	 * same time, in which case the rest of the connections are tried too).
 	 * @param messages The list of Messages to try
 	 * @param connections The list of Connections to try
-	 * @return The connections that started a transfer or null if no connection
-	 * accepted a message.
+	 * @return The (first) connection that started a transfer or null if 
+	 * no connection accepted a message.
 	 */
 	protected Connection tryMessagesToConnections(List<Message> messages,
 			List<Connection> connections) {
+		Connection first = null;
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
 			Message started = tryAllMessages(con, messages); 
 			if (started != null) { 
-				return con;
+				if (!this.multiTransfer) {
+					return con;
+				}
+				if (first == null) {
+					first = con;
+				}
 			}
 		}
 		
-		return null;
+		return first;
 	}
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
 	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * {@link MessageRouter#sortMessages(List)}. See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
-	 * @return The connections that started a transfer or null if no connection
-	 * accepted a message.
+	 * Messages that the other host has already seen (see 
+	 * {@link MessageRouter#hasSeenMessage(Message)}) are not offered to it.
+	 * @return The (first) connection that started a transfer or null if 
+	 * no connection accepted a message.
 	 */
 	protected Connection tryAllMessagesToAllConnections(){
 		List<Connection> connections = getConnections();
@@ -426,16 +642,49 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Message> messages = 
 			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		this.sortMessages(messages);
+		
+		/* messages that the other host has already seen would be denied, 
+		 * so only the rest of them are offered to each connection (except 
+		 * for messages to the other host that may have to be deleted, 
+		 * see startTransfer) */
+		List<Message> unseen = new ArrayList<Message>(messages.size());
+		Connection first = null;
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (this.multiTransfer && !canUseConnection(con)) {
+				continue; // no need to check the messages
+			}
+			DTNHost other = con.getOtherNode(getHost());
+			MessageRouter othRouter = other.getRouter();
+			
+			unseen.clear();
+			for (int j=0, k=messages.size(); j<k; j++) {
+				Message m = messages.get(j);
+				if (m.getTo() == other || !othRouter.hasSeenMessage(m)) {
+					unseen.add(m);
+				}
+			}
+			
+			if (tryAllMessages(con, unseen) != null) {
+				if (!this.multiTransfer) {
+					return con;
+				}
+				if (first == null) {
+					first = con;
+				}
+			}
+		}
+		
+		return first;
 	}
 		
 	/**
 	 * Exchanges deliverable (to final recipient) messages between this host
 	 * and all hosts this host is currently connected to. First all messages
 	 * from this host are checked and then all other hosts are asked for
-	 * messages to this host. If a transfer is started, the search ends.
+	 * messages to this host. If a transfer is started, the search ends 
+	 * (unless the router can use several connections at the same time).
 	 * @return A connection that started a transfer or null if no transfer
 	 * was started
 	 */
@@ -446,22 +695,30 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 		
-		@SuppressWarnings(value = "unchecked")
 		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
+			tryMessagesForConnected(sortTuples(getMessagesForConnected()));
 
-		if (t != null) {
+		if (t != null && !this.multiTransfer) {
 			return t.getValue(); // started transfer
 		}
 		
 		// didn't start transfer to any node -> ask messages from connected
+		Connection first = (t != null ? t.getValue() : null);
 		for (Connection con : connections) {
+			if (this.multiTransfer && !canUseConnection(con)) {
+				continue;
+			}
 			if (con.getOtherNode(getHost()).requestDeliverableMessages(con)) {
-				return con;
+				if (!this.multiTransfer) {
+					return con;
+				}
+				if (first == null) {
+					first = con;
+				}
 			}
 		}
 		
-		return null;
+		return first;
 	}
 
 
@@ -491,10 +748,23 @@ public abstract class ActiveRouter extends MessageRouter {
 		
 	/**
 	 * Returns true if this router is transferring something at the moment or
-	 * some transfer has not been finalized.
+	 * some transfer has not been finalized. If the router can use several
+	 * connections at the same time, returns true only if none of the 
+	 * connections can be used for a new transfer (see 
+	 * {@link #canUseConnection(Connection)}).
 	 * @return true if this router is transferring something
 	 */
 	public boolean isTransferring() {
+		if (this.multiTransfer) {
+			List<Connection> connections = getConnections();
+			for (int i=0, n=connections.size(); i<n; i++) {
+				if (canUseConnection(connections.get(i))) {
+					return false;
+				}
+			}
+			return connections.size() > 0;
+		}
+		
 		if (this.sendingConnections.size() > 0) {
 			return true; // sending something
 		}
@@ -521,11 +791,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
+		int handle = Message.findHandle(msgId);
+		return handle >= 0 && isSending(handle);
+	}
+	
+	/**
+	 * Returns true if this router is currently sending a message whose ID
+	 * has the given handle.
+	 * @param handle Handle of the message's ID
+	 * @return True if the message is being sent false if not
+	 * @see Message#getHandle()
+	 */
+	public boolean isSending(int handle) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (con.getMessage().getHandle() == handle) {
 				return true;
 			}
 		}
@@ -535,16 +817,17 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL <= 0 (see {@link #dropExpiredMessages()}).
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
 	public void update() {
 		
 		super.update();
+		this.lastUpdateTime = SimClock.getTime();
 		
-		/* in theory we can have multiple sending connections even though
-		  currently all routers allow only one concurrent sending connection */
+		/* there are multiple sending connections only if the router can 
+		   use several connections at the same time (see multiTransfer) */
 		for (int i=0; i<this.sendingConnections.size(); ) {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
@@ -553,11 +836,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
 					transferDone(con);
-                                    try {
-                                        con.finalizeTransfer();
-                                    } catch (IOException ex) {
-                                        Logger.getLogger(ActiveRouter.class.getName()).log(Level.SEVERE, null, ex);
-                                    }
+					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
 				removeCurrent = true;
 			}
@@ -583,14 +862,53 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		/* drop the messages whose TTL has run out */
+		dropExpiredMessages();
 	}
 	
+	/**
+	 * Returns the next simulation time when a transfer of this router is
+	 * done or the TTL of a buffered message runs out (if nothing else 
+	 * changes). If a connection
+	 * has become free for transfers, or the buffer of this or a connected
+	 * router has changed since the last update (e.g., the other host 
+	 * finished sending or dropped a message after this router was updated),
+	 * the current time is returned so that the router gets to react to it.
+	 */
+	@Override
+	public double getNextEventTime() {
+		double next = super.getNextEventTime();
+
+		if (getBufferChangeTime() >= this.lastUpdateTime) {
+			return SimClock.getTime();
+		}
+		for (Connection con : getConnections()) {
+			if (con.isReadyForTransfer() && 
+					con.getReadyTime() >= this.lastUpdateTime) {
+				return SimClock.getTime();
+			}
+			MessageRouter other = con.getOtherNode(getHost()).getRouter();
+			if (other.getBufferChangeTime() >= this.lastUpdateTime) {
+				return SimClock.getTime();
+			}
+		}
+
+		if (this.multiTransfer && 
+				this.lastTransferStartTime >= this.lastUpdateTime &&
+				!isTransferring()) {
+			return SimClock.getTime(); // more transfers can be started
+		}
+
+		for (Connection con : this.sendingConnections) {
+			if (!con.isUp() || con.getMessage() == null) {
+				return SimClock.getTime(); // sending connection to clear
+			}
+			next = Math.min(next, con.getTransferDoneTime());
+		}
+
+		return Math.min(next, getNextExpiryTime());
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -186,6 +186,14 @@ public class EnergyAwareRouter extends ActiveRouter
 		this.tryAllMessagesToAllConnections();
 	}
 		
+	/**
+	 * Returns the current time since scanning uses energy on every update.
+	 */
+	@Override
+	public double getNextEventTime() {
+		return SimClock.getTime();
+	}
+
 	@Override
 	public EnergyAwareRouter replicate() {
 		return new EnergyAwareRouter(this);
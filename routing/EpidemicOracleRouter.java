@@ -8,9 +8,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import core.*;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * <P>
@@ -62,17 +59,13 @@ public class EpidemicOracleRouter extends ActiveRouter {
 			for (Message m : newMessages) {
 				/* try to start transfer from peer */
 				if (con.startTransfer(peer, m) == RCV_OK) {
-                                    try {
-                                        con.finalizeTransfer(); /* and finalize it right away */
-                                    } catch (IOException ex) {
-                                        Logger.getLogger(EpidemicOracleRouter.class.getName()).log(Level.SEVERE, null, ex);
-                                    }
+					con.finalizeTransfer(); /* and finalize it right away */
 				}
 			}
 		}
 	}
 
-	private void sendMessageToConnected(Message m) throws IOException {
+	private void sendMessageToConnected(Message m) {
 		DTNHost host = getHost();
 		
 		for (Connection c : getConnections()) {
@@ -89,11 +82,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 			throw new SimError("Can't create message " + m);
 		}
 
-            try {
-                sendMessageToConnected(m);
-            } catch (IOException ex) {
-                Logger.getLogger(EpidemicOracleRouter.class.getName()).log(Level.SEVERE, null, ex);
-            }
+		sendMessageToConnected(m);
 		
 		return true;
 	}
@@ -127,11 +116,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 				}
 			}
 		} else {
-                    try {
-                        sendMessageToConnected(m);
-                    } catch (IOException ex) {
-                        Logger.getLogger(EpidemicOracleRouter.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+			sendMessageToConnected(m);
 		}
 		
 		return m;
@@ -167,7 +152,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == con.getOtherNode(getHost())) { 
-			this.deleteMessage(m.getId(), false);
+			this.deleteMessage(m.getHandle(), false);
 		}
 	}
 	
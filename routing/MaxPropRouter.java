@@ -5,15 +5,17 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import routing.buffer.BufferPolicy;
+import routing.buffer.MaxPropCostPolicy;
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
 import core.Connection;
@@ -52,14 +54,18 @@ public class MaxPropRouter extends ActiveRouter {
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;	
-	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
+	/** handles of the messages that are known to have reached the final dst */
+	private BitSet ackedMessages;
+	/** are the costs calculated by the dijkstra valid. This should be set
+	 * to false always when the costs should be updated (a host is met) */
+	private boolean costsValid;
+	/** Version number of the meeting probabilities; increased always when 
+	 * the delivery costs may have changed (a host is met) */
+	private int costVersion;
+	/** Sum of the sizes of the buffered messages by their hop counts */
+	private int[] bytesByHopCount;
+	/** Number of the buffered messages by their hop counts */
+	private int[] msgsByHopCount;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -111,14 +117,26 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessages = new BitSet();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
+		this.bytesByHopCount = new int[0];
+		this.msgsByHopCount = new int[0];
 	}	
 
+	/**
+	 * Returns a {@link MaxPropCostPolicy} that drops messages in MaxProp's
+	 * message ordering scheme.
+	 */
+	@Override
+	protected BufferPolicy createDefaultBufferPolicy() {
+		return new MaxPropCostPolicy();
+	}
+
 	@Override
 	public void changedConnection(Connection con) {
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
+			this.costsValid = false; // invalidate old cost estimates
+			this.costVersion++;
 			
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
@@ -132,8 +150,8 @@ public class MaxPropRouter extends ActiveRouter {
 				MaxPropRouter otherRouter = (MaxPropRouter)mRouter;
 				
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.ackedMessages.or(otherRouter.ackedMessages);
+				otherRouter.ackedMessages.or(this.ackedMessages);
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 				
@@ -176,20 +194,22 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
-				this.deleteMessage(id, false);
+		/* copy the messages because deleting modifies the collection */
+		List<Message> msgs = new ArrayList<Message>(getMessageCollection());
+		for (Message m : msgs) {
+			if (this.ackedMessages.get(m.getHandle()) && 
+					!isSending(m.getHandle())) {
+				this.deleteMessage(m.getHandle(), false);
 			}
 		}
 	}
 	
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessages.set(m.getHandle());
 		}
 		return m;
 	}
@@ -205,8 +225,8 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = con.getMessage();
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == con.getOtherNode(getHost())) { 
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
-			this.deleteMessage(m.getId(), false); // delete from buffer
+			this.ackedMessages.set(m.getHandle()); // yes, add to ACKed messages
+			this.deleteMessage(m.getHandle(), false); // delete from buffer
 		}
 	}
 	
@@ -239,32 +259,50 @@ public class MaxPropRouter extends ActiveRouter {
 		}
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getHandle());
+		if (old != null) {
+			updateHopCounts(old, -1);
+		}
+		updateHopCounts(m, 1);
+		super.addToMessages(m, newMessage);
+	}
+	
+	@Override
+	protected Message removeFromMessages(int handle) {
+		Message m = super.removeFromMessages(handle);
+		if (m != null) {
+			updateHopCounts(m, -1);
+		}
+		return m;
+	}
+	
 	/**
-	 * Returns the next message that should be dropped, according to MaxProp's
-	 * message ordering scheme (see {@link MaxPropTupleComparator}). 
-	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the next-to-be-dropped check (i.e., if next message to
-	 * drop is being sent, the following message is returned)
-	 * @return The oldest message or null if no message could be returned
-	 * (no messages in buffer or all messages in buffer are being sent and
-	 * exludeMsgBeingSent is true)
+	 * Updates the per hop count message counters
+	 * @param m The message that was added or removed
+	 * @param change 1 if the message was added, -1 if removed
 	 */
-    @Override
-	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		List<Message> validMessages = new ArrayList<Message>();
-
-		for (Message m : messages) {	
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-			validMessages.add(m);
+	private void updateHopCounts(Message m, int change) {
+		int hops = m.getHopCount();
+		if (hops >= this.msgsByHopCount.length) {
+			int size = Math.max(hops + 1, this.msgsByHopCount.length * 2);
+			this.msgsByHopCount = Arrays.copyOf(this.msgsByHopCount, size);
+			this.bytesByHopCount = Arrays.copyOf(this.bytesByHopCount, size);
 		}
-		
-		Collections.sort(validMessages, 
-				new MaxPropComparator(this.calcThreshold())); 
-		
-		return validMessages.get(validMessages.size()-1); // return last message
+		this.msgsByHopCount[hops] += change;
+		this.bytesByHopCount[hops] += change * m.getSize();
+	}
+	
+	/**
+	 * Returns the version number of the meeting probabilities that the
+	 * delivery costs are calculated from. The number changes always when
+	 * the costs returned by {@link #getCost(DTNHost, DTNHost)} may have
+	 * changed.
+	 * @return The current cost version
+	 */
+	public int getCostVersion() {
+		return this.costVersion;
 	}
 	
 	@Override
@@ -285,8 +323,9 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host, 
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The paths from each "from" host are 
+	 * searched only as far as needed and the results are kept until the 
+	 * next contact.
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or 
@@ -294,29 +333,14 @@ public class MaxPropRouter extends ActiveRouter {
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
 		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
+		if (!this.costsValid) {
+			/* cached costs are invalid -> discard old searches */
 			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-			
-			/* calculate paths only to nodes we have messages to 
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-						
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
+			this.dijkstra.invalidate();
+			this.costsValid = true;
 		}
 		
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		return dijkstra.getCost(from.getAddress(), to.getAddress());
 	}
 	
 	/**
@@ -390,35 +414,30 @@ public class MaxPropRouter extends ActiveRouter {
 			return 0; // no need for the threshold 
 		}
 		
-		/* creates a copy of the messages list, sorted by hop count */
-		ArrayList<Message> msgs = new ArrayList<Message>();
-		msgs.addAll(getMessageCollection());
-		if (msgs.size() == 0) {
+		if (getNrofMessages() == 0) {
 			return 0; // no messages -> no need for threshold
 		}
-		/* anonymous comparator class for hop count comparison */
-		Comparator<Message> hopCountComparator = new Comparator<Message>() {
-			public int compare(Message m1, Message m2) {
-				return m1.getHopCount() - m2.getHopCount();
-			}
-		};
-		Collections.sort(msgs, hopCountComparator);
 
-		/* finds the first message that is beyond the calculated portion */
-		int i=0;
-		for (int n=msgs.size(); i<n && p>0; i++) {
-			p -= msgs.get(i).getSize();
-		}
-		
-		i--; // the last round moved i one index too far 
-		if (i < 0) {
-			return 0;
+		/* goes through the messages in the order of their hop counts 
+		 * (using the per hop count counters) and finds the hop count of 
+		 * the first message that is beyond the calculated portion */
+		int maxHopCount = 0;
+		for (int h=0; h<this.msgsByHopCount.length; h++) {
+			if (this.msgsByHopCount[h] == 0) {
+				continue;
+			}
+			maxHopCount = h;
+			p -= this.bytesByHopCount[h];
+			if (p <= 0) {
+				/* the threshold is that packet's hop count + 1 (so that 
+				 * packet and perhaps some more are included in the 
+				 * priority part) */
+				return h + 1;
+			}
 		}
 		
-		/* now i points to the first packet that exceeds portion p; 
-		 * the threshold is that packet's hop count + 1 (so that packet and
-		 * perhaps some more are included in the priority part) */
-		return msgs.get(i).getHopCount() + 1;
+		/* all messages fit in the portion */
+		return maxHopCount + 1;
 	}
 	
 	/**
@@ -4,6 +4,8 @@
  */
 package routing;
 
+import java.util.BitSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,6 +17,7 @@ import java.util.Random;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
+import core.IntObjectMap;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
@@ -65,13 +68,38 @@ public abstract class MessageRouter {
 	/** Receive return value for unspecified reason */
 	public static final int DENIED_UNSPECIFIED = -999;
 	
+	/** Compares two messages by their receiving time */
+	private static final Comparator<Message> RECEIVE_TIME_ORDER = 
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			double diff = m1.getReceiveTime() - m2.getReceiveTime();
+			if (diff == 0) {
+				return 0;
+			}
+			return (diff < 0 ? -1 : 1);
+		}
+	};
+	/** Compares two tuples by their messages' receiving time */
+	private static final Comparator<Tuple<Message, Connection>> 
+		TUPLE_RECEIVE_TIME_ORDER = new Comparator<Tuple<Message, Connection>>() {
+		public int compare(Tuple<Message, Connection> t1, 
+				Tuple<Message, Connection> t2) {
+			return RECEIVE_TIME_ORDER.compare(t1.getKey(), t2.getKey());
+		}
+	};
+	
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
-	/** The messages this router is carrying */
-	private HashMap<String, Message> messages; 
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
+	/** The messages being transferred and the hosts they are from */
+	private List<Tuple<Message, DTNHost>> incomingMessages;
+	/** The messages this router is carrying by their handles */
+	private IntObjectMap<Message> messages; 
+	/** Sum of the sizes of the messages this router is carrying */
+	private int bufferOccupancy;
+	/** The messages this router has received as the final recipient 
+	 * by their handles */
+	private IntObjectMap<Message> deliveredMessages;
+	/** summary vector: handles of the buffered and delivered messages */
+	private BitSet summaryVector;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -80,6 +108,11 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** sim time when a message was last added to or removed from buffer */
+	private double bufferChangeTime;
+	/** random number generator for shuffling the sending queue (reseeded
+	 * before every shuffle) */
+	private Random queueRng;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>>	applications = null;
@@ -122,11 +155,15 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
+		this.incomingMessages = new ArrayList<Tuple<Message, DTNHost>>(2);
+		this.messages = new IntObjectMap<Message>();
+		this.bufferOccupancy = 0;
+		this.deliveredMessages = new IntObjectMap<Message>();
+		this.summaryVector = new BitSet();
 		this.mListeners = mListeners;
 		this.host = host;
+		this.bufferChangeTime = SimClock.getTime();
+		this.queueRng = new Random();
 	}
 	
 	/**
@@ -159,6 +196,22 @@ public abstract class MessageRouter {
 		}
 	}
 	
+	/**
+	 * Returns the next simulation time when updating this router may change
+	 * its state if no messages are created or received and no connections 
+	 * go up or down. Used for skipping idle update intervals. This 
+	 * implementation returns the current time if the host has applications
+	 * (they are updated on every update) and Double.POSITIVE_INFINITY 
+	 * otherwise.
+	 * @return The next time when this router needs to be updated
+	 */
+	public double getNextEventTime() {
+		if (this.applications.size() > 0) {
+			return SimClock.getTime();
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -171,7 +224,18 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	public Message getMessage(String id) {
-		return this.messages.get(id);
+		int handle = Message.findHandle(id);
+		return handle < 0 ? null : this.messages.get(handle);
+	}
+	
+	/**
+	 * Returns a message by the handle of its ID.
+	 * @param handle Handle of the message's ID
+	 * @return The message or null if there is no such message in the buffer
+	 * @see Message#getHandle()
+	 */
+	protected Message getMessage(int handle) {
+		return this.messages.get(handle);
 	}
 	
 	/**
@@ -180,7 +244,8 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	protected boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		int handle = Message.findHandle(id);
+		return handle >= 0 && this.messages.containsKey(handle);
 	}
 	
 	/**
@@ -192,7 +257,21 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return this.deliveredMessages.containsKey(m.getHandle());
+	}
+	
+	/**
+	 * Returns true if a message with the same ID as the given message is
+	 * in the buffer of this router or has been delivered to this host, i.e., 
+	 * if {@link #hasMessage(String)} or {@link #isDeliveredMessage(Message)} 
+	 * is true. The check is a lookup of the message's handle in the 
+	 * summary vector of this router, so it is cheap enough to be done by 
+	 * the other routers for every message they consider sending to this one.
+	 * @param m The message we're interested of
+	 * @return true if this router has seen a message with the same ID
+	 */
+	protected boolean hasSeenMessage(Message m) {
+		return this.summaryVector.get(m.getHandle());
 	}
 	
 	/**
@@ -231,17 +310,21 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-		
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.bufferOccupancy;
+	}
+	
+	/**
+	 * Returns the amount of buffer space used by the messages this router
+	 * is carrying. The value is kept up to date when messages are added to
+	 * or removed from the buffer.
+	 * @return The sum of the sizes of the buffered messages
+	 */
+	public int getOccupiedBufferSize() {
+		return this.bufferOccupancy;
 	}
 	
 	/**
@@ -341,7 +424,8 @@ public abstract class MessageRouter {
 			addToMessages(aMessage, false);
 		}
 		else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getHandle(), aMessage);
+			this.summaryVector.set(incoming.getHandle());
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -359,7 +443,7 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.add(new Tuple<Message, DTNHost>(m, from));
 	}
 	
 	/**
@@ -370,7 +454,15 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int handle = Message.findHandle(id);
+		for (int i=0, n=this.incomingMessages.size(); i<n; i++) {
+			Tuple<Message, DTNHost> t = this.incomingMessages.get(i);
+			if (t.getKey().getHandle() == handle && t.getValue() == from) {
+				this.incomingMessages.remove(i);
+				return t.getKey();
+			}
+		}
+		return null;
 	}
 	
 	/**
@@ -380,7 +472,13 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		int handle = Message.findHandle(id);
+		for (int i=0, n=this.incomingMessages.size(); i<n; i++) {
+			if (this.incomingMessages.get(i).getKey().getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -391,7 +489,13 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getHandle(), m);
+		if (old != null) { /* replaced a message with the same ID */
+			this.bufferOccupancy -= old.getSize();
+		}
+		this.bufferOccupancy += m.getSize();
+		this.summaryVector.set(m.getHandle());
+		this.bufferChangeTime = SimClock.getTime();
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -406,9 +510,38 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		int handle = Message.findHandle(id);
+		return handle < 0 ? null : removeFromMessages(handle);
+	}
+	
+	/**
+	 * Removes and returns a message from the message buffer by the handle
+	 * of its ID. Subclasses that keep track of the buffered messages should
+	 * override this method (the ID version calls this one).
+	 * @param handle Handle of the ID of the message to remove
+	 * @return The removed message or null if message for the handle wasn't
+	 * found
+	 */
+	protected Message removeFromMessages(int handle) {
+		Message m = this.messages.remove(handle);
+		if (m != null) {
+			this.bufferOccupancy -= m.getSize();
+			if (!this.deliveredMessages.containsKey(m.getHandle())) {
+				this.summaryVector.clear(m.getHandle());
+			}
+			this.bufferChangeTime = SimClock.getTime();
+		}
 		return m;
 	}
+
+	/**
+	 * Returns the simulation time when a message was last added to or 
+	 * removed from the message buffer
+	 * @return The time of the latest buffer change
+	 */
+	public double getBufferChangeTime() {
+		return this.bufferChangeTime;
+	}
 	
 	/**
 	 * This method should be called (on the receiving host) when a message 
@@ -451,9 +584,25 @@ public abstract class MessageRouter {
 	 * because it was delivered to final destination.  
 	 */
 	public void deleteMessage(String id, boolean drop) {
-		Message removed = removeFromMessages(id); 
-		if (removed == null) throw new SimError("no message for id " +
-				id + " to remove at " + this.host);
+		int handle = Message.findHandle(id);
+		if (handle < 0 || !this.messages.containsKey(handle)) {
+			throw new SimError("no message for id " + id + " to remove at " +
+					this.host);
+		}
+		deleteMessage(handle, drop);
+	}
+	
+	/**
+	 * Deletes a message from the buffer by the handle of its ID and informs
+	 * message listeners about the event
+	 * @param handle Handle of the ID of the message to delete
+	 * @param drop If the message is dropped (see 
+	 * {@link #deleteMessage(String, boolean)})
+	 */
+	protected void deleteMessage(int handle, boolean drop) {
+		Message removed = removeFromMessages(handle); 
+		if (removed == null) throw new SimError("no message for handle " +
+				handle + " to remove at " + this.host);
 		
 		for (MessageListener ml : this.mListeners) {
 			ml.messageDeleted(removed, this.host, drop);
@@ -461,53 +610,51 @@ public abstract class MessageRouter {
 	}
 	
 	/**
-	 * Sorts/shuffles the given list according to the current sending queue 
-	 * mode. The list can contain either Message or Tuple<Message, Connection> 
-	 * objects. Other objects cause error. 
+	 * Sorts/shuffles the given list of messages according to the current
+	 * sending queue mode.
 	 * @param list The list to sort or shuffle
 	 * @return The sorted/shuffled list
 	 */
-	@SuppressWarnings(value = "unchecked") /* ugly way to make this generic */
-	protected List sortByQueueMode(List list) {
+	protected List<Message> sortMessages(List<Message> list) {
+		if (!shuffleByQueueMode(list) && list.size() > 1) {
+			Collections.sort(list, RECEIVE_TIME_ORDER);
+		}
+		return list;
+	}
+	
+	/**
+	 * Sorts/shuffles the given list of message-connection tuples according 
+	 * to the current sending queue mode. The tuples are ordered by their
+	 * messages.
+	 * @param list The list to sort or shuffle
+	 * @return The sorted/shuffled list
+	 */
+	protected List<Tuple<Message, Connection>> sortTuples(
+			List<Tuple<Message, Connection>> list) {
+		if (!shuffleByQueueMode(list) && list.size() > 1) {
+			Collections.sort(list, TUPLE_RECEIVE_TIME_ORDER);
+		}
+		return list;
+	}
+	
+	/**
+	 * Shuffles the given list if the current sending queue mode is random.
+	 * @param list The list to shuffle
+	 * @return True if the list was shuffled, false if it should be sorted
+	 * in the order of the queue mode instead
+	 */
+	private boolean shuffleByQueueMode(List<?> list) {
 		switch (sendQueueMode) {
 		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
-			break;
+			this.queueRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(list, this.queueRng);
+			return true;
 		case Q_MODE_FIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their messages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					Message m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<Message, Connection>)o1).getKey();
-						m2 = ((Tuple<Message, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof Message) {
-						m1 = (Message)o1;
-						m2 = (Message)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getReceiveTime() - m2.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
-			break;
+			return false;
 		/* add more queue modes here */
 		default:
 			throw new SimError("Unknown queue mode " + sendQueueMode);
 		}
-		
-		return list;
 	}
 
 	/**
@@ -553,8 +700,8 @@ public abstract class MessageRouter {
 		ri.addMoreInfo(delivered);
 		ri.addMoreInfo(cons);
 		
-		for (Message m : this.incomingMessages.values()) {
-			incoming.addMoreInfo(new RoutingInfo(m));
+		for (Tuple<Message, DTNHost> t : this.incomingMessages) {
+			incoming.addMoreInfo(new RoutingInfo(t.getKey()));
 		}
 		
 		for (Message m : this.deliveredMessages.values()) {
@@ -98,8 +98,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 		
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<Message> copiesLeft = sortByQueueMode(getMessagesWithCopiesLeft());
+		List<Message> copiesLeft = sortMessages(getMessagesWithCopiesLeft());
 		
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -137,9 +136,8 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Integer nrofCopies;
-		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
-		Message msg = getMessage(msgId);
+		Message msg = getMessage(con.getMessage().getHandle());
 
 		if (msg == null) { // message has been dropped from the buffer after..
 			return; // ..start of transfer -> no need to reduce amount of copies
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import routing.ActiveRouter;
+import core.Message;
+import core.Settings;
+
+/**
+ * Superclass for buffer policies. A buffer policy decides which message an
+ * {@link ActiveRouter} drops next when it needs room in its message buffer.
+ * The router informs its policy about every message that is added to or
+ * removed from the buffer, so policies can keep their own ordering of the
+ * messages up to date instead of going through the whole buffer whenever
+ * a message has to be dropped.
+ * <P>Policies are configured per group with the router's
+ * {@link ActiveRouter#BUFFER_POLICY_S} setting. The router given in the
+ * settings is a prototype, and each router gets its own policy from the
+ * prototype's policy with {@link #replicate()}.</P>
+ */
+public abstract class BufferPolicy {
+	/** The router whose buffer this policy manages */
+	private ActiveRouter router;
+
+	/**
+	 * Constructor. Creates a new policy with default settings.
+	 */
+	public BufferPolicy() { }
+
+	/**
+	 * Constructor. Creates a new policy based on the settings in the given
+	 * Settings object (the namespace of the router's group).
+	 * @param s The settings object
+	 */
+	public BufferPolicy(Settings s) { }
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype where setting values are copied from
+	 */
+	protected BufferPolicy(BufferPolicy p) { }
+
+	/**
+	 * Initializes the policy for a router. Called when the router is
+	 * initialized, before any messages are added to its buffer.
+	 * @param router The router whose buffer this policy manages
+	 */
+	public void init(ActiveRouter router) {
+		this.router = router;
+	}
+
+	/**
+	 * Returns the router whose buffer this policy manages
+	 * @return The router
+	 */
+	protected ActiveRouter getRouter() {
+		return this.router;
+	}
+
+	/**
+	 * Called when a message is added to the buffer
+	 * @param m The message that was added
+	 */
+	public abstract void messageAdded(Message m);
+
+	/**
+	 * Called when a message is removed from the buffer
+	 * @param m The message that was removed
+	 */
+	public abstract void messageRemoved(Message m);
+
+	/**
+	 * Returns the message that should be dropped next from the buffer.
+	 * @param excludeMsgBeingSent If true, messages that the router is
+	 * sending are not returned (the next message in the policy's order is
+	 * returned instead)
+	 * @return The message to drop or null if there is no message that could
+	 * be dropped
+	 */
+	public abstract Message getMessageToDrop(boolean excludeMsgBeingSent);
+
+	/**
+	 * Creates a replicate of this policy. The replicate has the same
+	 * settings as this policy but no messages.
+	 * @return A replicate of this policy
+	 */
+	public abstract BufferPolicy replicate();
+
+	/**
+	 * Returns true if the message can't be dropped because the router is
+	 * sending it and messages being sent are excluded
+	 * @param m The message
+	 * @param excludeMsgBeingSent If messages being sent are excluded
+	 * @return True if the message must be skipped
+	 */
+	protected boolean isExcluded(Message m, boolean excludeMsgBeingSent) {
+		return excludeMsgBeingSent && this.router.isSending(m.getHandle());
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the largest message. Messages of equal size
+ * are dropped oldest first.
+ */
+public class DropLargestPolicy extends OrderedBufferPolicy {
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public DropLargestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected DropLargestPolicy(DropLargestPolicy p) {
+		super(p);
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return m2.getSize() - m1.getSize();
+	}
+
+	@Override
+	public BufferPolicy replicate() {
+		return new DropLargestPolicy(this);
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message that was received first (the
+ * default policy of active routers).
+ */
+public class DropOldestPolicy extends OrderedBufferPolicy {
+
+	/**
+	 * Constructor. Creates a new policy.
+	 */
+	public DropOldestPolicy() {
+		super();
+	}
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public DropOldestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected DropOldestPolicy(DropOldestPolicy p) {
+		super(p);
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return 0; // the receive time order of the superclass is enough
+	}
+
+	@Override
+	public BufferPolicy replicate() {
+		return new DropOldestPolicy(this);
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the most recently received message.
+ */
+public class DropYoungestPolicy extends OrderedBufferPolicy {
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public DropYoungestPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected DropYoungestPolicy(DropYoungestPolicy p) {
+		super(p);
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Double.compare(m2.getReceiveTime(), m1.getReceiveTime());
+	}
+
+	@Override
+	public BufferPolicy replicate() {
+		return new DropYoungestPolicy(this);
+	}
+}
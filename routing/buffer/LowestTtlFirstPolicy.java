@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Buffer policy that drops the message with the lowest remaining TTL. The
+ * messages are ordered by their expiry times, which gives the same order
+ * as the remaining TTLs at any time but doesn't change while the messages
+ * are in the buffer. Messages with infinite TTL are dropped last.
+ */
+public class LowestTtlFirstPolicy extends OrderedBufferPolicy {
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public LowestTtlFirstPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected LowestTtlFirstPolicy(LowestTtlFirstPolicy p) {
+		super(p);
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Double.compare(m1.getExpiryTime(), m2.getExpiryTime());
+	}
+
+	@Override
+	public BufferPolicy replicate() {
+		return new LowestTtlFirstPolicy(this);
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import routing.ActiveRouter;
+import routing.MaxPropRouter;
+import core.IntObjectMap;
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Buffer policy of the MaxProp router (the default policy of
+ * {@link MaxPropRouter}). Messages whose hop count is below the router's
+ * current threshold are kept first (ordered by hop count) and the other
+ * messages after them ordered by the delivery cost to their destination.
+ * The message that is last in this order is dropped first.
+ * <P>The messages are kept in a sorted set and messages added after the
+ * last request are inserted in it when the next message to drop is
+ * requested. The order depends on the threshold and on the delivery costs,
+ * which may change when the router meets another host. The messages are
+ * grouped by their destination, so when the costs may have changed only
+ * the cost of every destination is checked, and only the messages of the
+ * destinations whose cost has changed (and the messages that move over the
+ * new threshold) are moved in the set. Messages whose order isn't defined
+ * by the hop count and cost are ordered by their receive times and
+ * IDs.</P>
+ */
+public class MaxPropCostPolicy extends BufferPolicy {
+	private MaxPropRouter router;
+	/** entries of all buffered messages by message handle */
+	private IntObjectMap<Entry> entries;
+	/** the sorted entries (valid only if sorted is true) */
+	private TreeSet<Entry> order;
+	/** entries added after the last sorting */
+	private List<Entry> pending;
+	/** entries grouped by the address of their destination host */
+	private IntObjectMap<Destination> destinations;
+	/** has the sorted set been created */
+	private boolean sorted;
+	/** threshold the set is sorted with */
+	private int threshold;
+	/** cost version of the router the set is sorted with */
+	private int costVersion;
+
+	/**
+	 * Constructor. Creates a new policy.
+	 */
+	public MaxPropCostPolicy() {
+		super();
+	}
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public MaxPropCostPolicy(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected MaxPropCostPolicy(MaxPropCostPolicy p) {
+		super(p);
+	}
+
+	@Override
+	public void init(ActiveRouter router) {
+		if (!(router instanceof MaxPropRouter)) {
+			throw new SettingsError(this + " only works with MaxPropRouter" +
+					" (router was " + router + ")");
+		}
+		super.init(router);
+		this.router = (MaxPropRouter)router;
+		this.entries = new IntObjectMap<Entry>();
+		this.order = new TreeSet<Entry>();
+		this.pending = new ArrayList<Entry>();
+		this.destinations = new IntObjectMap<Destination>();
+		this.sorted = false;
+	}
+
+	@Override
+	public void messageAdded(Message m) {
+		int to = m.getTo().getAddress();
+		Destination d = this.destinations.get(to);
+		if (d == null) {
+			d = new Destination();
+			this.destinations.put(to, d);
+		}
+
+		Entry e = new Entry(m, d);
+		d.entries.add(e);
+		this.entries.put(m.getHandle(), e);
+		if (this.sorted) {
+			this.pending.add(e);
+		}
+	}
+
+	@Override
+	public void messageRemoved(Message m) {
+		Entry e = this.entries.remove(m.getHandle());
+		if (e == null) {
+			return;
+		}
+		if (e.inOrder) {
+			this.order.remove(e);
+		}
+		e.removed = true; // skip it if it is still pending
+
+		e.dest.entries.remove(e);
+		if (e.dest.entries.isEmpty()) {
+			this.destinations.remove(m.getTo().getAddress());
+		}
+	}
+
+	@Override
+	public Message getMessageToDrop(boolean excludeMsgBeingSent) {
+		int t = this.router.calcThreshold();
+		int v = this.router.getCostVersion();
+
+		if (!this.sorted) {
+			sort(t, v);
+		}
+		else {
+			if (t != this.threshold || v != this.costVersion) {
+				resort(t, v);
+			}
+			for (Entry e : this.pending) {
+				if (!e.removed) {
+					add(e);
+				}
+			}
+			this.pending.clear();
+		}
+
+		Iterator<Entry> i = this.order.descendingIterator();
+		while (i.hasNext()) {
+			Message m = i.next().msg;
+			if (!isExcluded(m, excludeMsgBeingSent)) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sorts all messages again
+	 * @param threshold The current threshold of the router
+	 * @param costVersion The current cost version of the router
+	 */
+	private void sort(int threshold, int costVersion) {
+		this.threshold = threshold;
+		this.costVersion = costVersion;
+		this.order.clear();
+		this.pending.clear();
+
+		for (Entry e : this.entries.values()) {
+			add(e);
+		}
+		this.sorted = true;
+	}
+
+	/**
+	 * Moves the entries whose sort keys have changed with the threshold or
+	 * the costs in the sorted set. The pending entries are added later.
+	 * @param threshold The current threshold of the router
+	 * @param costVersion The current cost version of the router
+	 */
+	private void resort(int threshold, int costVersion) {
+		boolean thresholdChanged = threshold != this.threshold;
+		boolean costsChanged = costVersion != this.costVersion;
+		this.threshold = threshold;
+		this.costVersion = costVersion;
+
+		for (Destination d : this.destinations.values()) {
+			for (int i=0, n=d.entries.size(); i<n; i++) {
+				Entry e = d.entries.get(i);
+				if (!e.inOrder) {
+					continue; // pending
+				}
+				if (e.priority != (e.hops < threshold) ||
+						(costsChanged && !e.priority && e.cost != getCost(d))) {
+					this.order.remove(e);
+					add(e);
+				}
+				else if (!thresholdChanged && !e.priority) {
+					/* all entries of the destination have the same cost */
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the sort keys of an entry and adds it to the sorted set
+	 * @param e The entry
+	 */
+	private void add(Entry e) {
+		e.priority = e.hops < this.threshold;
+		if (!e.priority) {
+			e.cost = getCost(e.dest);
+		}
+		e.inOrder = true;
+		this.order.add(e);
+	}
+
+	/**
+	 * Returns the delivery cost to a destination. The cost is asked from
+	 * the router only once per cost version.
+	 * @param d The destination
+	 * @return The cost
+	 */
+	private double getCost(Destination d) {
+		if (!d.hasCost || d.costVersion != this.costVersion) {
+			d.cost = this.router.getCost(this.router.getHost(),
+					d.entries.get(0).msg.getTo());
+			d.costVersion = this.costVersion;
+			d.hasCost = true;
+		}
+		return d.cost;
+	}
+
+	@Override
+	public BufferPolicy replicate() {
+		return new MaxPropCostPolicy(this);
+	}
+
+	/**
+	 * The entries of the messages to the same destination host and the
+	 * delivery cost to it
+	 */
+	private static class Destination {
+		private List<Entry> entries = new ArrayList<Entry>(2);
+		private double cost;
+		/** cost version the cost was asked with */
+		private int costVersion;
+		private boolean hasCost;
+	}
+
+	/**
+	 * A buffered message and its sort keys
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private Message msg;
+		private Destination dest;
+		private int hops;
+		private boolean priority;
+		private double cost;
+		private boolean inOrder;
+		private boolean removed;
+
+		public Entry(Message msg, Destination dest) {
+			this.msg = msg;
+			this.dest = dest;
+			this.hops = msg.getHopCount();
+		}
+
+		/**
+		 * Compares two entries. The one that should be kept longer (or
+		 * sent first) comes first.
+		 */
+		public int compareTo(Entry e) {
+			int c;
+			if (this.priority != e.priority) {
+				return this.priority ? -1 : 1;
+			}
+			if (!this.priority) {
+				c = Double.compare(this.cost, e.cost);
+				if (c != 0) {
+					return c;
+				}
+			}
+			c = this.hops - e.hops;
+			if (c != 0) {
+				return c;
+			}
+			c = Double.compare(this.msg.getReceiveTime(),
+					e.msg.getReceiveTime());
+			if (c != 0) {
+				return c;
+			}
+			return this.msg.getId().compareTo(e.msg.getId());
+		}
+	}
+}
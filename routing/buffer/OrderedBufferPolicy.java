@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.buffer;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Superclass for buffer policies whose drop order depends only on message
+ * properties that don't change while the message is in the buffer. The
+ * messages are kept in a sorted set, so adding and removing a message and
+ * finding the next message to drop take O(log n) time. Messages with an
+ * equal sort key are dropped in the order they were received (and by
+ * their IDs if also the receive times are equal).
+ */
+public abstract class OrderedBufferPolicy extends BufferPolicy {
+	/** The buffered messages in the order they should be dropped */
+	private TreeSet<Message> dropOrder;
+
+	/**
+	 * Constructor. Creates a new policy with default settings.
+	 */
+	public OrderedBufferPolicy() {
+		super();
+		init();
+	}
+
+	/**
+	 * Constructor. Creates a new policy based on the given settings.
+	 * @param s The settings object
+	 */
+	public OrderedBufferPolicy(Settings s) {
+		super(s);
+		init();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype where setting values are copied from
+	 */
+	protected OrderedBufferPolicy(OrderedBufferPolicy p) {
+		super(p);
+		init();
+	}
+
+	/**
+	 * Creates the sorted set
+	 */
+	private void init() {
+		this.dropOrder = new TreeSet<Message>(new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				int c = compareForDrop(m1, m2);
+				if (c != 0) {
+					return c;
+				}
+				c = Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+				if (c != 0) {
+					return c;
+				}
+				return m1.getId().compareTo(m2.getId());
+			}
+		});
+	}
+
+	/**
+	 * Compares two messages by the drop order of this policy. Only message
+	 * properties that don't change while the message is in the buffer may
+	 * be used.
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return A negative value if the first message should be dropped first,
+	 * a positive value if the second one should be dropped first, or zero
+	 * if the policy doesn't define the order
+	 */
+	protected abstract int compareForDrop(Message m1, Message m2);
+
+	@Override
+	public void messageAdded(Message m) {
+		this.dropOrder.add(m);
+	}
+
+	@Override
+	public void messageRemoved(Message m) {
+		this.dropOrder.remove(m);
+	}
+
+	@Override
+	public Message getMessageToDrop(boolean excludeMsgBeingSent) {
+		for (Message m : this.dropOrder) {
+			if (!isExcluded(m, excludeMsgBeingSent)) {
+				return m;
+			}
+		}
+		return null;
+	}
+}
@@ -4,36 +4,37 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
+import core.IntObjectMap;
+
 /**
  * Dijkstra's shortest path implementation for MaxProp Router module.
+ * The search from every source node is kept in memory and continued only
+ * as far as needed for finding the requested node, so the costs from the
+ * same source can be asked many times (for any nodes) without new searches
+ * until the probability sets change. The searches use primitive arrays
+ * indexed by node addresses and a binary heap that supports decreasing
+ * the distance of a node.
  */
 public class MaxPropDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Initial size of the node tables */
+	private static final int INITIAL_SIZE = 16;
+
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
-	
+	/** Searches done after the last invalidation by source node */
+	private IntObjectMap<Search> searches;
+	/** Searches that can be reused for new source nodes */
+	private List<Search> unusedSearches;
+
 	/**
 	 * Constructor.
 	 * @param probs A reference to the mapping of the known hosts meeting
@@ -41,184 +42,274 @@ public class MaxPropDijkstra {
 	 */
 	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs) {
 		this.probs = probs;
+		this.searches = new IntObjectMap<Search>();
+		this.unusedSearches = new ArrayList<Search>();
 	}
 
 	/**
-	 * Initializes a new search with the first hop router node
-	 * @param firstHop The first hop router node
+	 * Discards the results of all earlier searches. Must be called every
+	 * time any of the probability sets has changed.
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE, 
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
-		
-		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+	public void invalidate() {
+		if (this.searches.size() == 0) {
+			return;
+		}
+		this.unusedSearches.addAll(this.searches.values());
+		this.searches.clear();
 	}
-	
+
 	/**
-	 * Calculates total costs to the given set of target nodes. The cost to 
+	 * Calculates total costs to the given set of target nodes. The cost to
 	 * a node is the sum of complements of probabilities that all the links
-	 * come up as the next contact of the nodes. 
+	 * come up as the next contact of the nodes. The costs are calculated
+	 * from scratch (i.e., the results of earlier searches are discarded).
 	 * @param from The index (address) of the start node
 	 * @param to The address set of destination nodes
 	 * @return A map of (destination node, cost) tuples
 	 */
 	public Map<Integer, Double> getCosts(Integer from, Set<Integer> to) {
 		Map<Integer, Double> distMap = new HashMap<Integer, Double>();
-		int nrofNodesToFind = to.size();
-		
-		initWith(from);
-		Integer node = null;
-		
-		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (to.contains(node)) {
-				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
-				nrofNodesToFind--;
-				if (nrofNodesToFind == 0) {
-					break; // all requested nodes found
-				}
-			} 
-			
-			visited.add(node); // mark the node as visited
-			relax(node);       // add/update neighbor nodes' distances
+
+		invalidate();
+		for (Integer node : to) {
+			double cost = getCost(from, node);
+			if (cost != INFINITY) {
+				distMap.put(node, cost);
+			}
 		}
-			
+
 		return distMap;
 	}
-	
+
 	/**
-	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * Returns the total cost from a node to another node (see
+	 * {@link #getCosts(Integer, Set)}). The search from the start node is
+	 * continued from where it was left the last time, if the probability
+	 * sets haven't been changed (see {@link #invalidate()}) since that.
+	 * @param from The index (address) of the start node
+	 * @param to The index (address) of the destination node
+	 * @return The cost or Double.MAX_VALUE if there is no known path
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
-		
-		if (!this.probs.containsKey(node)) {
-			return; // node's neighbors are not known
-		}
-		
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-		
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
-				continue; // skip visited nodes
+	public double getCost(int from, int to) {
+		Search s = this.searches.get(from);
+		if (s == null) {
+			if (this.unusedSearches.isEmpty()) {
+				s = new Search();
 			}
-						
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
-			
-			if (distancesFromStart.get(n) > nDist) { 
-				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
-				setDistance(n, nDist);
+			else {
+				s = this.unusedSearches.remove(this.unusedSearches.size() - 1);
 			}
+			s.initWith(from);
+			this.searches.put(from, s);
 		}
+		return s.getDistance(to);
 	}
-	
-	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
-	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
-	}
-	
-	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the 
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to". 
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
-	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
-	}
-	
+
 	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
+	 * State of a search from one source node. Node distances are valid only
+	 * if their generation is the current generation of the search, so the
+	 * tables don't have to be cleared between searches.
 	 */
-	private class DistanceComparator implements 
-		Comparator<Integer> {
-		
+	private class Search {
+		/** distances of the nodes from the source node */
+		private double[] dist;
+		/** generation of the search where the distance was set */
+		private int[] distGen;
+		/** generation of the search where the node was visited */
+		private int[] visitedGen;
+		/** position of the node in the heap or -1 if it is not there */
+		private int[] heapPos;
+		/** heap of unvisited nodes discovered so far */
+		private int[] heap;
+		private int heapSize;
+		/** generation of the current search */
+		private int gen;
+
+		public Search() {
+			this.dist = new double[INITIAL_SIZE];
+			this.distGen = new int[INITIAL_SIZE];
+			this.visitedGen = new int[INITIAL_SIZE];
+			this.heapPos = new int[INITIAL_SIZE];
+			this.heap = new int[INITIAL_SIZE];
+			Arrays.fill(this.heapPos, -1);
+		}
+
 		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
+		 * Initializes a new search with the first hop router node
+		 * @param firstHop The first hop router node
 		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
-			
-			if (dist1 > dist2) {
-				return 1;
+		public void initWith(int firstHop) {
+			for (int i=0; i<heapSize; i++) {
+				heapPos[heap[i]] = -1;
 			}
-			else if (dist1 < dist2) {
-				return -1;
+			heapSize = 0;
+			gen++;
+
+			// set distance to source 0 and initialize unvisited queue
+			ensureCapacity(firstHop);
+			setDistance(firstHop, 0);
+		}
+
+		/**
+		 * Returns the distance of a node from the source node. The search is
+		 * continued until the node is visited or all reachable nodes are.
+		 * @param node The node
+		 * @return The distance or {@link MaxPropDijkstra#INFINITY} if the node
+		 * isn't reachable
+		 */
+		public double getDistance(int node) {
+			if (isVisited(node)) {
+				return dist[node];
 			}
-			else {
-				return node1.compareTo(node2);
+
+			// always take the node with shortest distance
+			while (heapSize > 0) {
+				int n = poll();
+				visitedGen[n] = gen; // mark the node as visited
+				relax(n);            // add/update neighbor nodes' distances
+				if (n == node) {
+					return dist[n];
+				}
 			}
+
+			return INFINITY;
 		}
-	}
-	
-	/**
-	 * Simple Map implementation for storing distances. 
-	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
-		
+
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Relaxes the neighbors of a node (updates the shortest distances).
+		 * @param node The node whose neighbors are relaxed
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>(); 
+		private void relax(int node) {
+			double nodeDist = dist[node];
+			MeetingProbabilitySet mps = probs.get(node);
+
+			if (mps == null) {
+				return; // node's neighbors are not known
+			}
+
+			for (Map.Entry<Integer, Double> e :
+					mps.getAllProbs().entrySet()) {
+				int n = e.getKey();
+				ensureCapacity(n);
+				if (isVisited(n)) {
+					continue; // skip visited nodes
+				}
+
+				// n node's distance from path's source node
+				double nDist = nodeDist + (1 - e.getValue());
+
+				if (getDist(n) > nDist) {
+					// stored distance > found dist -> update
+					setDistance(n, nDist);
+				}
+			}
+		}
+
+		private boolean isVisited(int node) {
+			return node < visitedGen.length && visitedGen[node] == gen;
+		}
+
+		private double getDist(int node) {
+			return distGen[node] == gen ? dist[node] : INFINITY;
 		}
-		
+
 		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
+		 * Sets the distance from source node to a node and moves the node
+		 * to its new place in the heap
+		 * @param n The node whose distance is set
+		 * @param distance The distance of the node from the source node
 		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+		private void setDistance(int n, double distance) {
+			dist[n] = distance;
+			distGen[n] = gen;
+			if (heapPos[n] < 0) {
+				heapPos[n] = heapSize;
+				heap[heapSize++] = n;
 			}
-			else {
-				return INFINITY;
+			siftUp(heapPos[n]); // distances only decrease
+		}
+
+		/**
+		 * Removes and returns the node with the smallest distance
+		 * @return The node
+		 */
+		private int poll() {
+			int first = heap[0];
+			heapPos[first] = -1;
+			heapSize--;
+			if (heapSize > 0) {
+				heap[0] = heap[heapSize];
+				heapPos[heap[0]] = 0;
+				siftDown(0);
 			}
+			return first;
 		}
-		
+
+		private void siftUp(int i) {
+			int n = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!isBefore(n, heap[parent])) {
+					break;
+				}
+				heap[i] = heap[parent];
+				heapPos[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = n;
+			heapPos[n] = i;
+		}
+
+		private void siftDown(int i) {
+			int n = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize &&
+						isBefore(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!isBefore(heap[child], n)) {
+					break;
+				}
+				heap[i] = heap[child];
+				heapPos[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = n;
+			heapPos[n] = i;
+		}
+
 		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
+		 * Compares two nodes by their distance from the source node (and by
+		 * their indexes if the distances are equal)
+		 * @return true if node1 should be visited before node2
 		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
+		private boolean isBefore(int node1, int node2) {
+			if (dist[node1] != dist[node2]) {
+				return dist[node1] < dist[node2];
+			}
+			return node1 < node2;
 		}
-		
+
 		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
+		 * Makes sure the tables are big enough for the given node index
+		 * @param node The node index
 		 */
-		public String toString() {
-			return map.toString();
+		private void ensureCapacity(int node) {
+			if (node < dist.length) {
+				return;
+			}
+			int oldSize = dist.length;
+			int size = Math.max(oldSize * 2, node + 1);
+			dist = Arrays.copyOf(dist, size);
+			distGen = Arrays.copyOf(distGen, size);
+			visitedGen = Arrays.copyOf(visitedGen, size);
+			heapPos = Arrays.copyOf(heapPos, size);
+			heap = Arrays.copyOf(heap, size);
+			Arrays.fill(heapPos, oldSize, size, -1);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -12,12 +12,17 @@ import core.SimClock;
 
 /**
  * Class for storing and manipulating the meeting probabilities for the MaxProp
- * router module.
+ * router module. Replicas of a set share the probability mapping with the
+ * original set until either one of them is updated (copy-on-write), so the
+ * replicas that routers keep of the other hosts' sets are cheap snapshots.
  */
 public class MeetingProbabilitySet {
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
 	/** meeting probabilities (probability that the next node one meets is X) */
 	private Map<Integer, Double> probs;
+	/** is the probability mapping shared with other sets (and must be 
+	 * copied before modifying it) */
+	private boolean shared;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
 	/** the alpha parameter */
@@ -41,6 +46,7 @@ public class MeetingProbabilitySet {
             this.maxSetSize = maxSetSize;
         }
 		this.lastUpdateTime = 0;
+		this.shared = false;
 	}
 	
 	/**
@@ -64,6 +70,20 @@ public class MeetingProbabilitySet {
 		}
 	}
 	
+	/**
+	 * Copy constructor. Creates a set that shares the probability mapping 
+	 * with the given set.
+	 * @param s The set to copy
+	 */
+	private MeetingProbabilitySet(MeetingProbabilitySet s) {
+		this.alpha = s.alpha;
+		this.maxSetSize = s.maxSetSize;
+		this.probs = s.probs;
+		this.lastUpdateTime = s.lastUpdateTime;
+		this.shared = true;
+		s.shared = true;
+	}
+	
 	/**
 	 * Updates meeting probability for the given node index.
 	 * <PRE> P(b) = P(b)_old + alpha
@@ -77,6 +97,7 @@ public class MeetingProbabilitySet {
         double smallestValue = Double.MAX_VALUE;
 
 		this.lastUpdateTime = SimClock.getTime();
+		copyIfShared();
 		
 		if (probs.size() == 0) { // first entry
 			probs.put(index, 1.0);
@@ -104,9 +125,29 @@ public class MeetingProbabilitySet {
 	}
 	
 	public void updateMeetingProbFor(Integer index, double iet)	{
+		copyIfShared();
 		probs.put(index, iet);
 	}
 	
+	/**
+	 * Makes a private copy of the probability mapping if it is shared with
+	 * other sets. Must be called before modifying the mapping.
+	 */
+	private void copyIfShared() {
+		if (!this.shared) {
+			return;
+		}
+		Map<Integer, Double> copy;
+		if (this.maxSetSize == INFINITE_SET_SIZE) {
+			copy = new HashMap<Integer, Double>();
+		} else {
+			copy = new HashMap<Integer, Double>(this.maxSetSize);
+		}
+		copy.putAll(this.probs);
+		this.probs = copy;
+		this.shared = false;
+	}
+	
 	/**
 	 * Returns the current delivery probability value for the given node index 
 	 * @param index The index of the node to look the P for
@@ -123,7 +164,8 @@ public class MeetingProbabilitySet {
 	}
 	
 	/**
-	 * Returns a reference to the probability map of this probability set
+	 * Returns a reference to the probability map of this probability set.
+	 * The map may be shared with other sets so it must not be modified.
 	 * @return a reference to the probability map of this probability set
 	 */
 	public Map<Integer, Double> getAllProbs() {
@@ -146,20 +188,12 @@ public class MeetingProbabilitySet {
 	}
 	
 	/**
-	 * Returns a deep copy of the probability set
-	 * @return a deep copy of the probability set
+	 * Returns a copy of the probability set. The copy shares the probability
+	 * mapping with this set until either one of them is updated.
+	 * @return a copy of the probability set
 	 */
 	public MeetingProbabilitySet replicate() {
-		MeetingProbabilitySet replica = new MeetingProbabilitySet(
-				this.maxSetSize, alpha);
-		
-		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
-		}
-		
-		replica.lastUpdateTime = this.lastUpdateTime;
-		return replica;
+		return new MeetingProbabilitySet(this);
 	}
 	
 	/**
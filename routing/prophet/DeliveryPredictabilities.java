@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.prophet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Delivery predictabilities of a PRoPHET router. The values are stored in
+ * primitive arrays indexed by the address of the host they are for. Aging
+ * is done lazily: every value has the time when it was last aged and
+ * <CODE>P = P_old * (GAMMA ^ k)</CODE> (where k is the number of time units
+ * elapsed since that time) is calculated only when the value is read.
+ */
+public class DeliveryPredictabilities {
+	/** initial capacity of the tables */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** the delivery predictabilities by host address */
+	private double[] preds;
+	/** the times when the predictabilities were last aged */
+	private double[] agedTimes;
+	/** the hosts of the predictabilities */
+	private DTNHost[] hosts;
+	/** addresses of the hosts that have a predictability */
+	private BitSet known;
+	/** the aging constant */
+	private double gamma;
+	/** how many seconds one time unit is */
+	private double secondsInTimeUnit;
+
+	/**
+	 * Constructor. Creates an empty set of predictabilities.
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one time unit of aging is
+	 */
+	public DeliveryPredictabilities(double gamma, double secondsInTimeUnit) {
+		this.preds = new double[INITIAL_CAPACITY];
+		this.agedTimes = new double[INITIAL_CAPACITY];
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.known = new BitSet();
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+	}
+
+	/**
+	 * Returns the current predictability for a host or 0 if there's no
+	 * predictability for the host.
+	 * @param host The host
+	 * @return The predictability
+	 */
+	public double get(DTNHost host) {
+		int address = host.getAddress();
+		if (!this.known.get(address)) {
+			return 0;
+		}
+		return age(address);
+	}
+
+	/**
+	 * Sets the current predictability for a host
+	 * @param host The host
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= this.preds.length) {
+			int capacity = Math.max(this.preds.length * 2, address + 1);
+			this.preds = Arrays.copyOf(this.preds, capacity);
+			this.agedTimes = Arrays.copyOf(this.agedTimes, capacity);
+			this.hosts = Arrays.copyOf(this.hosts, capacity);
+		}
+		this.preds[address] = value;
+		this.agedTimes[address] = SimClock.getTime();
+		this.hosts[address] = host;
+		this.known.set(address);
+	}
+
+	/**
+	 * Sets a new aging constant. All predictabilities are first aged with
+	 * the old constant so that the new one is used only from now on.
+	 * @param gamma The new aging constant
+	 */
+	public void setGamma(double gamma) {
+		for (int i = known.nextSetBit(0); i >= 0; i = known.nextSetBit(i+1)) {
+			age(i);
+		}
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Returns the number of hosts that have a predictability
+	 * @return The number of predictabilities
+	 */
+	public int size() {
+		return this.known.cardinality();
+	}
+
+	/**
+	 * Returns the first index that has a predictability, starting from the
+	 * given index. Together with {@link #getHost(int)} and
+	 * {@link #getValue(int)} this can be used to iterate through all the
+	 * predictabilities:<BR>
+	 * <CODE>for (int i = p.nextIndex(0); i >= 0; i = p.nextIndex(i+1))</CODE>
+	 * @param fromIndex The index to start from
+	 * @return The next index or -1 if there are no more predictabilities
+	 */
+	public int nextIndex(int fromIndex) {
+		return this.known.nextSetBit(fromIndex);
+	}
+
+	/**
+	 * Returns the host of a predictability
+	 * @param index Index of the predictability
+	 * @return The host
+	 * @see #nextIndex(int)
+	 */
+	public DTNHost getHost(int index) {
+		return this.hosts[index];
+	}
+
+	/**
+	 * Returns the current value of a predictability
+	 * @param index Index of the predictability
+	 * @return The value
+	 * @see #nextIndex(int)
+	 */
+	public double getValue(int index) {
+		return age(index);
+	}
+
+	/**
+	 * Ages a predictability to the current time
+	 * @param index Index of the predictability
+	 * @return The aged value
+	 */
+	private double age(int index) {
+		double now = SimClock.getTime();
+		double timeDiff = now - this.agedTimes[index];
+		if (timeDiff != 0) {
+			this.preds[index] *= Math.pow(this.gamma,
+					timeDiff / this.secondsInTimeUnit);
+			this.agedTimes[index] = now;
+		}
+		return this.preds[index];
+	}
+}
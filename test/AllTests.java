@@ -39,6 +39,7 @@ public class AllTests {
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
+		suite.addTestSuite(BufferPolicyTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
@@ -47,8 +48,16 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventQueueMultiplexerTest.class);
+		suite.addTestSuite(MultiLevelConnectivityGridTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(ReputationTableTest.class);
+		suite.addTestSuite(MaliciousHostReportTest.class);
+		suite.addTestSuite(MisbehaviourModelTest.class);
+		suite.addTestSuite(IntObjectMapTest.class);
+		suite.addTestSuite(PredictiveConnectivityGridTest.class);
+		suite.addTestSuite(PairwiseConnectivityGridTest.class);
 		//$JUnit-END$
 		return suite;
 	}
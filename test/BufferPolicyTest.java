@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the buffer policies of active routers
+ */
+public class BufferPolicyTest extends AbstractRouterTest {
+	private static final String NS = "BufferPolicyTest";
+
+	@Override
+	public void setUp() throws Exception {
+		setRouterProto(new EpidemicRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Creates a host whose router uses the given buffer policy
+	 * @param policy Name of the buffer policy class
+	 * @return The new host
+	 */
+	private DTNHost createHost(String policy) throws Exception {
+		ts.putSetting(NS + "." + MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(NS + "." + ActiveRouter.BUFFER_POLICY_S, policy);
+		utils.setMessageRouterProto(new EpidemicRouter(new TestSettings(NS)));
+		return utils.createHost(c0, "p0");
+	}
+
+	/**
+	 * Creates messages of size 30, 50 and 20 (one per second) to the host
+	 * and checks the create events
+	 * @param h The host
+	 */
+	private void createMessages(DTNHost h) {
+		h.createNewMessage(new Message(h, h1, msgId1, 30));
+		clock.advance(1);
+		h.createNewMessage(new Message(h, h1, msgId2, 50));
+		clock.advance(1);
+		h.createNewMessage(new Message(h, h1, msgId3, 20));
+		clock.advance(1);
+		checkCreates(3);
+	}
+
+	/**
+	 * Checks that the next event is a drop of the given message
+	 * @param id ID of the message
+	 */
+	private void checkDrop(String id) {
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.getLastDropped());
+		assertEquals(id, mc.getLastMsg().getId());
+	}
+
+	public void testDropOldest() throws Exception {
+		DTNHost h = createHost("DropOldestPolicy");
+		createMessages(h);
+
+		h.createNewMessage(new Message(h, h1, msgId4, 40));
+		checkDrop(msgId1);
+		checkDrop(msgId2);
+		checkCreates(1);
+		assertEquals(60.0, h.getBufferOccupancy());
+	}
+
+	public void testDropYoungest() throws Exception {
+		DTNHost h = createHost("DropYoungestPolicy");
+		createMessages(h);
+
+		h.createNewMessage(new Message(h, h1, msgId4, 40));
+		checkDrop(msgId3);
+		checkDrop(msgId2);
+		checkCreates(1);
+		assertEquals(70.0, h.getBufferOccupancy());
+	}
+
+	public void testDropLargest() throws Exception {
+		DTNHost h = createHost("DropLargestPolicy");
+		createMessages(h);
+
+		h.createNewMessage(new Message(h, h1, msgId4, 40));
+		checkDrop(msgId2);
+		checkCreates(1);
+		assertEquals(90.0, h.getBufferOccupancy());
+
+		/* sizes are now 30, 20 and 40 */
+		h.createNewMessage(new Message(h, h1, msgId5, 55));
+		checkDrop(msgId4);
+		checkDrop(msgId1);
+		checkCreates(1);
+		assertEquals(75.0, h.getBufferOccupancy());
+	}
+}
@@ -4,6 +4,7 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
 import core.DTNHost;
@@ -499,6 +500,35 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	public void testTtlExpiryWhileSending() {
+		Message m1 = new Message(h1,h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+		
+		clock.advance((TTL-1)*60 - 5);
+		Message m2 = new Message(h1,h2, msgId2, 9 * TRANSMIT_SPEED);
+		h1.createNewMessage(m2);
+		checkCreates(1);
+		
+		// start sending msgId2 from h1 to h2 (takes 9 seconds)
+		h1.connect(h2);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+		
+		// TTL of msgId1 runs out while h1 is still sending
+		clock.advance(6);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.getLastDropped());
+		assertEquals(h1, mc.getLastFrom());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+	}
+	
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
 		m1.setResponseSize(1);
@@ -619,4 +649,42 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+	
+	/**
+	 * Tests that a router that can use several connections at the same time
+	 * sends a message to as many hosts in parallel as its interface has
+	 * transfer slots
+	 */
+	public void testMultiTransfer() throws Exception {
+		final String ns = "MultiTransfer";
+		ts.putSetting(ns + "." + MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ns + "." + ActiveRouter.MULTI_TRANSFER_S, "true");
+		utils.setMessageRouterProto(new EpidemicRouter(new TestSettings(ns)));
+		utils.setTransferSlots(2);
+		DTNHost m0 = utils.createHost(c0, "m0");
+		DTNHost m1 = utils.createHost(c0, "m1");
+		DTNHost m2 = utils.createHost(c0, "m2");
+		DTNHost m3 = utils.createHost(c0, "m3");
+		ActiveRouter r0 = (ActiveRouter)m0.getRouter();
+		
+		m0.createNewMessage(new Message(m0, h1, msgId1, 10));
+		checkCreates(1);
+		m0.connect(m1);
+		m0.connect(m2);
+		m0.connect(m3);
+		
+		m0.update(true);
+		checkTransferStart(m0, m1, msgId1);
+		checkTransferStart(m0, m2, msgId1);
+		assertFalse(mc.next()); // both slots are in use
+		assertTrue(r0.isTransferring());
+		
+		clock.advance(10.0/TRANSMIT_SPEED);
+		m0.update(true);
+		checkDelivered(m0, m1, msgId1, false);
+		checkDelivered(m0, m2, msgId1, false);
+		checkTransferStart(m0, m3, msgId1);
+		assertFalse(mc.next());
+		assertFalse(r0.isTransferring());
+	}
 }
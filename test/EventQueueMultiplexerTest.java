@@ -0,0 +1,78 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.EventQueueMultiplexer;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimClock;
+
+/**
+ * Tests for the EventQueueMultiplexer
+ */
+public class EventQueueMultiplexerTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private ScheduledUpdatesQueue[] queues;
+	private EventQueueMultiplexer mp;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		queues = new ScheduledUpdatesQueue[5];
+		List<EventQueue> list = new ArrayList<EventQueue>();
+		for (int i=0; i<queues.length; i++) {
+			queues[i] = new ScheduledUpdatesQueue();
+			list.add(queues[i]);
+		}
+		queues[0].addUpdate(5);
+		queues[1].addUpdate(3);
+		queues[1].addUpdate(7);
+		queues[2].addUpdate(3);
+		queues[3].addUpdate(1);
+		mp = new EventQueueMultiplexer(list);
+	}
+	
+	public void testOrder() {
+		double[] times = {1, 3, 3, 5, 7};
+		EventQueue[] order = {queues[3], queues[1], queues[2], queues[0], 
+				queues[1]};
+		
+		for (int i=0; i<times.length; i++) {
+			assertEquals(times[i], mp.getNextEventsTime());
+			assertSame(order[i], mp.getNextQueue());
+			assertEquals(times[i], mp.getNextQueue().nextEvent().getTime());
+			mp.update(order[i]);
+		}
+		
+		assertEquals(MAX, mp.getNextEventsTime());
+	}
+	
+	public void testUpdate() {
+		queues[4].addUpdate(0.5);
+		assertEquals(1.0, mp.getNextEventsTime()); // not updated yet
+		mp.update(queues[4]);
+		assertSame(queues[4], mp.getNextQueue());
+		assertEquals(0.5, mp.getNextEventsTime());
+		
+		queues[4].nextEvent();
+		mp.update(queues[4]);
+		assertSame(queues[3], mp.getNextQueue());
+		
+		queues[0].addUpdate(1); // tie; lower index wins
+		mp.update(queues[0]);
+		assertSame(queues[0], mp.getNextQueue());
+	}
+	
+	public void testNoQueues() {
+		mp = new EventQueueMultiplexer(new ArrayList<EventQueue>());
+		assertNull(mp.getNextQueue());
+		assertEquals(MAX, mp.getNextEventsTime());
+	}
+}
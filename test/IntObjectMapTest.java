@@ -0,0 +1,202 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.IntObjectMap;
+
+/**
+ * Tests for the IntObjectMap
+ */
+public class IntObjectMapTest extends TestCase {
+	/** capacity of a new map */
+	private static final int INITIAL_CAPACITY = 8;
+	private IntObjectMap<String> map;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		map = new IntObjectMap<String>();
+	}
+
+	/**
+	 * Returns the slot where the probe sequence of a key starts in a table
+	 * of the given capacity (same as in IntObjectMap)
+	 */
+	private static int slot(int key, int capacity) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (capacity - 1);
+	}
+
+	/**
+	 * Returns keys whose probe sequences start from the given slot of a new
+	 * map
+	 * @param slot The slot
+	 * @param count How many keys to return
+	 * @return The keys
+	 */
+	private static int[] keysForSlot(int slot, int count) {
+		int[] keys = new int[count];
+		for (int key = 0, n = 0; n < count; key++) {
+			if (slot(key, INITIAL_CAPACITY) == slot) {
+				keys[n++] = key;
+			}
+		}
+		return keys;
+	}
+
+	public void testPutAndGet() {
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(2, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(2));
+		assertNull(map.get(3));
+		assertTrue(map.containsKey(2));
+		assertFalse(map.containsKey(3));
+		assertEquals(2, map.size());
+	}
+
+	public void testCollidingKeys() {
+		int[] keys = keysForSlot(3, 3);
+		for (int key : keys) {
+			map.put(key, "v" + key);
+		}
+		for (int key : keys) {
+			assertEquals("v" + key, map.get(key));
+		}
+
+		assertEquals("v" + keys[0], map.remove(keys[0]));
+		assertNull(map.get(keys[0]));
+		assertEquals("v" + keys[1], map.get(keys[1]));
+		assertEquals("v" + keys[2], map.get(keys[2]));
+		assertNull(map.remove(keys[0]));
+		assertEquals(2, map.size());
+	}
+
+	public void testRemoveAcrossWrapAround() {
+		int[] last = keysForSlot(INITIAL_CAPACITY - 1, 3); // slots 7, 0, 1
+		int first = keysForSlot(0, 1)[0]; // pushed to slot 2
+
+		for (int key : last) {
+			map.put(key, "v" + key);
+		}
+		map.put(first, "first");
+
+		/* entries in slots 0 and 2 must shift back over the table's end */
+		assertEquals("v" + last[0], map.remove(last[0]));
+		assertEquals("v" + last[1], map.get(last[1]));
+		assertEquals("v" + last[2], map.get(last[2]));
+		assertEquals("first", map.get(first));
+
+		assertEquals("v" + last[2], map.remove(last[2]));
+		assertEquals("v" + last[1], map.get(last[1]));
+		assertEquals("first", map.get(first));
+		assertEquals(2, map.size());
+	}
+
+	public void testResizeWithCollisions() {
+		int[] keys = keysForSlot(5, 40); // many resizes, all collide first
+		for (int key : keys) {
+			map.put(key, "v" + key);
+		}
+		assertEquals(keys.length, map.size());
+		for (int key : keys) {
+			assertEquals("v" + key, map.get(key));
+		}
+		for (int i = 0; i < keys.length; i += 2) {
+			map.remove(keys[i]);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(i % 2 == 0 ? null : "v" + keys[i], map.get(keys[i]));
+		}
+	}
+
+	public void testClear() {
+		for (int i = 0; i < 20; i++) {
+			map.put(i, "v" + i);
+		}
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(5));
+		assertFalse(map.values().iterator().hasNext());
+
+		map.put(5, "new");
+		assertEquals("new", map.get(5));
+		assertEquals(1, map.size());
+	}
+
+	public void testValues() {
+		for (int i = 0; i < 10; i++) {
+			map.put(i * 7, "v" + i);
+		}
+		List<String> values = new ArrayList<String>(map.values());
+		assertEquals(10, map.values().size());
+		assertEquals(10, values.size());
+		for (int i = 0; i < 10; i++) {
+			assertTrue(values.contains("v" + i));
+		}
+
+		map.remove(0);
+		assertEquals(9, map.values().size()); // view follows the map
+		assertFalse(map.values().contains("v0"));
+	}
+
+	public void testConcurrentModification() {
+		map.put(1, "a");
+		map.put(2, "b");
+
+		Iterator<String> i = map.values().iterator();
+		i.next();
+		map.put(3, "c");
+		try {
+			i.hasNext();
+			fail("Adding a key wasn't detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+
+		i = map.values().iterator();
+		map.remove(1);
+		try {
+			i.next();
+			fail("Removing a key wasn't detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+
+		i = map.values().iterator();
+		map.put(2, "d"); // replacing a value is not a structural change
+		assertTrue(i.hasNext());
+	}
+
+	public void testAgainstHashMap() {
+		Map<Integer, String> expected = new HashMap<Integer, String>();
+		Random rng = new Random(1);
+
+		for (int n = 0; n < 10000; n++) {
+			int key = rng.nextInt(64);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				String value = "v" + n;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int key = 0; key < 64; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
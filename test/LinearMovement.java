@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import movement.MovementModel;
+import movement.Path;
+import core.Coord;
+import core.SimClock;
+
+/**
+ * A movement model for testing purposes where nodes move once along a
+ * straight line at a constant speed and then stay at the end of the line.
+ * Nodes can also be made active only during a given time interval.
+ */
+public class LinearMovement extends MovementModel {
+	private Coord from;
+	private Coord to;
+	private double speed;
+	private double startTime;
+	private double activeStart;
+	private double activeEnd;
+	private boolean isPathGiven;
+
+	/**
+	 * Creates a new linear movement model
+	 * @param from The initial location
+	 * @param to The end of the line
+	 * @param speed The speed along the line
+	 * @param startTime The simulation time when the node starts to move
+	 */
+	public LinearMovement(Coord from, Coord to, double speed,
+			double startTime) {
+		this.from = from;
+		this.to = to;
+		this.speed = speed;
+		this.startTime = startTime;
+		this.activeStart = 0;
+		this.activeEnd = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Copy constructor
+	 * @param lm The prototype
+	 */
+	protected LinearMovement(LinearMovement lm) {
+		this(lm.from, lm.to, lm.speed, lm.startTime);
+		this.activeStart = lm.activeStart;
+		this.activeEnd = lm.activeEnd;
+	}
+
+	/**
+	 * Sets the time interval when the nodes are active
+	 * @param start Start of the interval (inclusive)
+	 * @param end End of the interval (exclusive)
+	 */
+	public void setActiveTimes(double start, double end) {
+		this.activeStart = start;
+		this.activeEnd = end;
+	}
+
+	@Override
+	public Coord getInitialLocation() {
+		return from.clone();
+	}
+
+	@Override
+	public boolean isActive() {
+		double time = SimClock.getTime();
+		return time >= activeStart && time < activeEnd;
+	}
+
+	/**
+	 * Returns the path to the end of the line the first time and null
+	 * after that
+	 * @return the path to the end of the line or null
+	 */
+	@Override
+	public Path getPath() {
+		if (isPathGiven) {
+			return null;
+		}
+		isPathGiven = true;
+		Path p = new Path(speed);
+		p.addWaypoint(to.clone());
+		return p;
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		return isPathGiven ? Double.MAX_VALUE : startTime;
+	}
+
+	@Override
+	public LinearMovement replicate() {
+		return new LinearMovement(this);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import report.MaliciousHostReport;
+import core.DTNHost;
+import core.SimClock;
+
+public class MaliciousHostReportTest extends TestCase {
+	private SimClock clock;
+	private File outFile;
+	private MaliciousHostReport r;
+	private TestUtils utils;
+
+	public void setUp() throws IOException {
+		final String NS = "MaliciousHostReport.";
+		TestSettings ts = new TestSettings();
+		outFile = File.createTempFile("mhrtest", ".tmp");
+		outFile.deleteOnExit();
+
+		ts.putSetting(NS + "output", outFile.getAbsolutePath());
+		ts.putSetting(NS + report.Report.PRECISION_SETTING, "1");
+		ts.putSetting(NS + MaliciousHostReport.QUEUE_SIZE_S, "1");
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+		r = new MaliciousHostReport();
+		this.utils = new TestUtils(null, null, ts);
+	}
+
+	public void testMaliciousHostFound() throws IOException {
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+
+		clock.advance(1.5);
+		r.maliciousHostFound(h1, h2);
+		clock.advance(1.0);
+		r.maliciousHostFound(h3, h1);
+		clock.advance(1.0);
+		r.maliciousHostFound(h2, h3);
+		r.done();
+
+		BufferedReader reader = new BufferedReader(new FileReader(outFile));
+		assertEquals(MaliciousHostReport.HEADER, reader.readLine());
+		assertEquals("1.5 " + h1 + " " + h2, reader.readLine());
+		assertEquals("2.5 " + h3 + " " + h1, reader.readLine());
+		assertEquals("3.5 " + h2 + " " + h3, reader.readLine());
+		assertEquals("# found: 3 average time: 2.5", reader.readLine());
+		assertNull(reader.readLine());
+		reader.close();
+	}
+}
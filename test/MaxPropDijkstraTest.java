@@ -5,10 +5,12 @@
 package test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -124,6 +126,138 @@ public class MaxPropDijkstraTest extends TestCase {
 	}
 	
 	
+	/**
+	 * Creates a random network of nodes whose addresses go beyond the
+	 * initial table sizes of the searches. Every third node's probability
+	 * set is unknown.
+	 * @param rng The random number generator
+	 * @param nrofNodes Number of nodes
+	 * @return The probability sets by node address
+	 */
+	private Map<Integer, MeetingProbabilitySet> createNetwork(Random rng,
+			int nrofNodes) {
+		Map<Integer, MeetingProbabilitySet> probs = 
+			new HashMap<Integer, MeetingProbabilitySet>();
+		for (int i=0; i<nrofNodes; i++) {
+			if (i % 3 == 2) {
+				continue;
+			}
+			MeetingProbabilitySet set = new MeetingProbabilitySet(
+					MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+			for (int j=0; j<4; j++) {
+				set.updateMeetingProbFor(rng.nextInt(nrofNodes));
+			}
+			probs.put(i, set);
+		}
+		return probs;
+	}
+
+	/**
+	 * Calculates the cost from a node to another with a simple Dijkstra
+	 * that doesn't keep any state
+	 */
+	private double referenceCost(Map<Integer, MeetingProbabilitySet> probs,
+			int from, int to) {
+		Map<Integer, Double> dist = new HashMap<Integer, Double>();
+		Set<Integer> visited = new HashSet<Integer>();
+		dist.put(from, 0.0);
+
+		while (true) {
+			Integer next = null;
+			for (Map.Entry<Integer, Double> e : dist.entrySet()) {
+				if (!visited.contains(e.getKey()) && (next == null ||
+						e.getValue() < dist.get(next))) {
+					next = e.getKey();
+				}
+			}
+			if (next == null) {
+				return Double.MAX_VALUE;
+			}
+			if (next == to) {
+				return dist.get(next);
+			}
+			visited.add(next);
+			MeetingProbabilitySet set = probs.get(next);
+			if (set == null) {
+				continue;
+			}
+			for (Map.Entry<Integer, Double> e : set.getAllProbs().entrySet()) {
+				double d = dist.get(next) + (1 - e.getValue());
+				Double old = dist.get(e.getKey());
+				if (!visited.contains(e.getKey()) && (old == null || d < old)) {
+					dist.put(e.getKey(), d);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Asks the costs from the given sources to all nodes (and to one
+	 * unknown node) in a random order and compares them to the reference
+	 */
+	private void checkCosts(MaxPropDijkstra d, 
+			Map<Integer, MeetingProbabilitySet> probs, int[] sources, 
+			int nrofNodes, Random rng) {
+		List<int[]> queries = new ArrayList<int[]>();
+		for (int from : sources) {
+			for (int to=0; to<=nrofNodes; to++) {
+				queries.add(new int[] {from, to});
+			}
+		}
+		Collections.shuffle(queries, rng);
+
+		for (int[] q : queries) {
+			assertEquals(q[0] + "->" + q[1], referenceCost(probs, q[0], q[1]),
+					d.getCost(q[0], q[1]), DELTA);
+		}
+	}
+
+	public void testResumedSearches() {
+		final int nrofNodes = 40; // more than the initial table size
+		Random rng = new Random(3);
+		Map<Integer, MeetingProbabilitySet> probs = 
+			createNetwork(rng, nrofNodes);
+		MaxPropDijkstra d = new MaxPropDijkstra(probs);
+		int[] sources = {0, 7, 39, 12};
+
+		checkCosts(d, probs, sources, nrofNodes, rng);
+		checkCosts(d, probs, sources, nrofNodes, rng); // all visited now
+
+		/* change the network; invalidated searches are reused for other
+		 * sources and their old generations must not leak through */
+		for (MeetingProbabilitySet set : probs.values()) {
+			set.updateMeetingProbFor(rng.nextInt(nrofNodes));
+		}
+		d.invalidate();
+		checkCosts(d, probs, new int[] {39, 4, 0, 21, 33}, nrofNodes, rng);
+
+		probs.put(45, new MeetingProbabilitySet(
+				MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0));
+		probs.get(45).updateMeetingProbFor(60); // grows the tables again
+		probs.get(0).updateMeetingProbFor(45);
+		d.invalidate();
+		assertEquals(referenceCost(probs, 0, 60), d.getCost(0, 60), DELTA);
+		checkCosts(d, probs, new int[] {0, 45}, nrofNodes, rng);
+	}
+
+	public void testReplicasAreSnapshots() {
+		MeetingProbabilitySet mps = mapping.get(0);
+		mps.updateMeetingProbFor(1);
+		
+		MeetingProbabilitySet replica = mps.replicate();
+		MeetingProbabilitySet replica2 = replica.replicate();
+		mps.updateMeetingProbFor(2); // update the original
+		assertEquals(0.5, mps.getProbFor(1));
+		assertEquals(1.0, replica.getProbFor(1));
+		assertEquals(0.0, replica.getProbFor(2));
+		
+		replica.updateMeetingProbFor(3); // update a replica
+		assertEquals(0.5, replica.getProbFor(3));
+		assertEquals(0.0, mps.getProbFor(3));
+		assertEquals(1.0, replica2.getProbFor(1));
+		assertEquals(0.0, replica2.getProbFor(3));
+	}
+	
 	public void testProbabilitySumsToOne() {
 		double total;
 		
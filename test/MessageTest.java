@@ -60,5 +60,22 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testHandles() {
+		Message.reset();
+		Message m1 = new Message(from, to, "M1", 100);
+		Message m2 = new Message(from, to, "M2", 100);
+		assertEquals(0, m1.getHandle());
+		assertEquals(1, m2.getHandle());
+		assertEquals(0, Message.findHandle("M1"));
+		assertEquals(0, m1.replicate().getHandle());
+		assertEquals(1, new Message(from, to, "M2", 50).getHandle());
+
+		/* lookups of unknown IDs don't give handles to them */
+		assertEquals(-1, Message.findHandle("M3"));
+		assertEquals(-1, Message.findHandle("M3"));
+		assertEquals(2, new Message(from, to, "M4", 100).getHandle());
+	}
+
 
 }
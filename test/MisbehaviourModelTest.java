@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import misbehaviour.BlackHoleModel;
+import misbehaviour.GreyHoleModel;
+import misbehaviour.MisbehaviourModel;
+import misbehaviour.SelectiveDropModel;
+import movement.ActivenessHandler;
+import routing.EpidemicRouter;
+import core.DTNHost;
+import core.Message;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Tests for the misbehaviour models
+ */
+public class MisbehaviourModelTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		setRouterProto(new EpidemicRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Creates five messages of size 10 to a host that isn't connected to
+	 * any other host
+	 * @return The host
+	 */
+	private DTNHost createHostWithMessages() throws Exception {
+		DTNHost h = utils.createHost(farAway, "p0");
+		for (int i = 0; i < 5; i++) {
+			h.createNewMessage(new Message(h, h1, "M" + i, 10));
+		}
+		checkCreates(5);
+		return h;
+	}
+
+	/**
+	 * Checks that the next event is a drop of the given message
+	 * @param id ID of the message
+	 */
+	private void checkDrop(String id) {
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.getLastDropped());
+		assertEquals(id, mc.getLastMsg().getId());
+	}
+
+	public void testMembers() {
+		String ns = "MisbehaviourModelTest.members";
+		ts.putSetting(ns + "." + MisbehaviourModel.HOSTS_S, "1,7");
+		ts.putSetting(ns + "." + MisbehaviourModel.HOST_STEP_S, "2");
+		MisbehaviourModel m = new SelectiveDropModel(new TestSettings(ns));
+
+		assertTrue(m.isMember(1));
+		assertTrue(m.isMember(3));
+		assertTrue(m.isMember(5));
+		assertFalse(m.isMember(0));
+		assertFalse(m.isMember(2));
+		assertFalse(m.isMember(7));
+		assertFalse(m.isMember(100));
+
+		m = new SelectiveDropModel(new TestSettings("MisbehaviourModelTest"));
+		assertTrue(m.isMember(0));
+		assertTrue(m.isMember(100));
+	}
+
+	public void testSelectiveDrop() throws Exception {
+		MisbehaviourModel m = new SelectiveDropModel(
+				new TestSettings("MisbehaviourModelTest.drop")).replicate();
+		DTNHost h = createHostWithMessages();
+		String first = h.getMessageCollection().iterator().next().getId();
+
+		assertEquals(SimClock.getTime(), m.getNextEventTime(h));
+		m.update(h);
+		checkDrop(first);
+		assertTrue(mc.next());
+		assertFalse(mc.next());
+		assertEquals(3, h.getNrofMessages());
+
+		assertEquals(Double.POSITIVE_INFINITY, m.getNextEventTime(h));
+		m.update(h);
+		assertFalse(mc.next());
+	}
+
+	public void testSchedule() throws Exception {
+		String ns = "MisbehaviourModelTest.schedule";
+		ts.putSetting(ns + "." + ActivenessHandler.ACTIVE_TIMES_S, "10,20");
+		MisbehaviourModel m = new SelectiveDropModel(new TestSettings(ns));
+		DTNHost h = createHostWithMessages();
+
+		m.update(h);
+		assertFalse(mc.next());
+		assertEquals(10.0, m.getNextEventTime(h));
+
+		clock.setTime(10);
+		m.update(h);
+		assertTrue(mc.next());
+		assertTrue(mc.next());
+		assertEquals(3, h.getNrofMessages());
+	}
+
+	public void testBlackHole() {
+		MisbehaviourModel m = new BlackHoleModel(
+				new TestSettings("MisbehaviourModelTest.blackHole"));
+		h1.createNewMessage(new Message(h1, h2, msgId1, 10));
+		checkCreates(1);
+
+		m.messageReceived(h1, msgId1, h0);
+		checkDrop(msgId1);
+		assertEquals(0, h1.getNrofMessages());
+
+		m.messageReceived(h1, msgId1, h0); // not in the buffer anymore
+		assertFalse(mc.next());
+	}
+
+	public void testGreyHole() {
+		int nrofMsgs = 20;
+		for (int i = 0; i < nrofMsgs; i++) {
+			h1.createNewMessage(new Message(h1, h2, "G" + i, 10));
+		}
+		checkCreates(nrofMsgs);
+
+		MisbehaviourModel m = createGreyHole("0");
+		for (int i = 0; i < nrofMsgs; i++) {
+			m.messageReceived(h1, "G" + i, h0);
+		}
+		assertFalse(mc.next()); // nothing dropped
+		assertEquals(nrofMsgs, h1.getNrofMessages());
+
+		m = createGreyHole("1");
+		for (int i = 0; i < nrofMsgs; i++) {
+			m.messageReceived(h1, "G" + i, h0);
+			checkDrop("G" + i);
+		}
+		assertFalse(mc.next());
+		assertEquals(0, h1.getNrofMessages());
+	}
+
+	public void testGreyHoleInvalidProb() {
+		for (String prob : new String[] {"-0.1", "1.5"}) {
+			try {
+				createGreyHole(prob);
+				fail("Drop probability " + prob + " was accepted");
+			} catch (SettingsError e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Creates a grey hole model with a fixed random number generator seed
+	 * @param dropProb Value of the drop probability setting
+	 * @return The model
+	 */
+	private MisbehaviourModel createGreyHole(String dropProb) {
+		String ns = "MisbehaviourModelTest.greyHole";
+		ts.putSetting(ns + "." + GreyHoleModel.DROP_PROB_S, dropProb);
+		ts.putSetting(ns + "." + GreyHoleModel.RNG_SEED_S, "1");
+		return new GreyHoleModel(new TestSettings(ns));
+	}
+}
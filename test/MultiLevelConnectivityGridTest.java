@@ -0,0 +1,135 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.MultiLevelConnectivityGrid;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the MultiLevelConnectivityGrid
+ */
+public class MultiLevelConnectivityGridTest extends TestCase {
+	private static final String OPTIMIZER_S = World.SETTINGS_NS + "." + 
+		World.CONNECTIVITY_OPTIMIZER_S;
+	/** key of the test interfaces' grid (they all are of type "Default") */
+	private static final int KEY = "Default".hashCode();
+	private TestSettings ts;
+	private TestUtils shortRange;
+	private TestUtils longRange;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		ts.putSetting(OPTIMIZER_S, "MultiLevelConnectivityGrid");
+		MultiLevelConnectivityGrid.reset();
+		
+		shortRange = new TestUtils(null, null, ts);
+		shortRange.setTransmitRange(10);
+		longRange = new TestUtils(null, null, ts);
+		longRange.setTransmitRange(100);
+	}
+	
+	protected void tearDown() throws Exception {
+		ts.putSetting(OPTIMIZER_S, World.DEF_CONNECTIVITY_OPTIMIZER);
+		super.tearDown();
+	}
+	
+	public void testNearInterfaces() throws Exception {
+		DTNHost s1 = shortRange.createHost(new Coord(100, 100));
+		DTNHost s2 = shortRange.createHost(new Coord(105, 100));
+		DTNHost s3 = shortRange.createHost(new Coord(300, 300));
+		DTNHost s4 = shortRange.createHost(new Coord(185, 100));
+		DTNHost l1 = longRange.createHost(new Coord(180, 100));
+		DTNHost l2 = longRange.createHost(new Coord(250, 100));
+		DTNHost l3 = longRange.createHost(new Coord(600, 600));
+		updateLocations(s1, s2, s3, s4, l1, l2, l3);
+		
+		assertNear(s1, s2);
+		assertNear(s4, l1);
+		assertNear(l1, l2);
+		assertNotNear(s1, s3);
+		assertNotNear(s1, l3);
+		assertNotNear(l1, l3);
+		assertNotNear(l1, s3);
+	}
+	
+	public void testRangeChange() throws Exception {
+		DTNHost s1 = shortRange.createHost(new Coord(100, 100));
+		DTNHost s2 = shortRange.createHost(new Coord(150, 100));
+		DTNHost l1 = longRange.createHost(new Coord(160, 100));
+		DTNHost l2 = longRange.createHost(new Coord(900, 900));
+		updateLocations(s1, s2, l1, l2);
+		
+		assertNotNear(s1, s2);
+		
+		shortRange.setTransmitRange(60);
+		assertNear(s1, s2);
+		assertNear(s1, l1);
+		assertNotNear(s1, l2);
+		
+		longRange.setTransmitRange(2000); // larger than the world
+		assertNear(l1, l2);
+		
+		shortRange.setTransmitRange(10);
+		assertNotNear(s1, s2);
+		assertNear(l1, l2);
+	}
+	
+	public void testExtremeRanges() throws Exception {
+		shortRange.setTransmitRange(0); // first interface gives the cell size
+		DTNHost s1 = shortRange.createHost(new Coord(100, 100));
+		DTNHost s2 = shortRange.createHost(new Coord(100, 100));
+		DTNHost l1 = longRange.createHost(new Coord(100, 100));
+		DTNHost l2 = longRange.createHost(new Coord(900, 900));
+		updateLocations(s1, s2, l1, l2);
+		assertNear(s1, s2);
+		assertNotNear(l1, l2);
+
+		longRange.setTransmitRange(1e12); // more than the int cell sizes
+		assertNear(l1, l2);
+		/* cell sizes 1, 2, 4, ..., 1024 (the first one larger than world) */
+		assertTrue(grid().toString().contains(" 11 levels"));
+	}
+
+	/* hosts get their locations after the interfaces are added to the grid,
+	 * so update the locations like the first world update would */
+	private void updateLocations(DTNHost... hosts) {
+		for (DTNHost h : hosts) {
+			grid().updateLocation(ni(h));
+		}
+	}
+	
+	private void assertNear(DTNHost h1, DTNHost h2) {
+		assertTrue(h2 + " not near " + h1, getNear(h1).contains(ni(h2)));
+		assertTrue(h1 + " not near " + h2, getNear(h2).contains(ni(h1)));
+	}
+	
+	private void assertNotNear(DTNHost h1, DTNHost h2) {
+		assertFalse(h2 + " near " + h1, getNear(h1).contains(ni(h2)));
+		assertFalse(h1 + " near " + h2, getNear(h2).contains(ni(h1)));
+	}
+	
+	private Collection<NetworkInterface> getNear(DTNHost h) {
+		return grid().getNearInterfaces(ni(h));
+	}
+	
+	private MultiLevelConnectivityGrid grid() {
+		return MultiLevelConnectivityGrid.MultiLevelConnectivityGridFactory(
+				KEY, 0);
+	}
+	
+	private NetworkInterface ni(DTNHost h) {
+		return h.getInterfaces().get(0);
+	}
+}
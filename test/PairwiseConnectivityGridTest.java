@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.PairwiseConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the PairwiseConnectivityGrid. The near interfaces given by the
+ * grid are compared with the real distances of all the pairs of hosts.
+ */
+public class PairwiseConnectivityGridTest extends TestCase {
+	private static final String OPTIMIZER_S = World.SETTINGS_NS + "." +
+		World.CONNECTIVITY_OPTIMIZER_S;
+	/** key of the test interfaces' grid (they all are of type "Default") */
+	private static final int KEY = "Default".hashCode();
+	/** range of the first interface, i.e., the grid's cell size */
+	private static final double CELL_SIZE = 10;
+	/** world size (from TestSettings) */
+	private static final double WORLD_SIZE = 1000;
+	private TestSettings ts;
+	private TestUtils longRange;
+	private TestUtils shortRange;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		ts.putSetting(OPTIMIZER_S, "PairwiseConnectivityGrid");
+		PairwiseConnectivityGrid.reset();
+
+		longRange = new TestUtils(null, null, ts);
+		longRange.setTransmitRange(CELL_SIZE);
+		shortRange = new TestUtils(null, null, ts);
+		shortRange.setTransmitRange(5);
+		hosts = new ArrayList<DTNHost>();
+	}
+
+	protected void tearDown() throws Exception {
+		ts.putSetting(OPTIMIZER_S, World.DEF_CONNECTIVITY_OPTIMIZER);
+		super.tearDown();
+	}
+
+	public void testCellBorders() throws Exception {
+		/* the cell borders are at multiples of CELL_SIZE */
+		DTNHost e1 = createHost(longRange, 95, 55);
+		DTNHost e2 = createHost(longRange, 103, 55); // east
+		DTNHost sw1 = createHost(longRange, 101, 159);
+		DTNHost sw2 = createHost(longRange, 96, 163); // south-west
+		DTNHost s1 = createHost(longRange, 255, 98);
+		DTNHost s2 = createHost(longRange, 255, 104); // south
+		DTNHost se1 = createHost(longRange, 398, 398);
+		DTNHost se2 = createHost(longRange, 403, 403); // south-east
+		DTNHost ne1 = createHost(longRange, 498, 501);
+		DTNHost ne2 = createHost(longRange, 503, 497); // north-east
+		DTNHost far1 = createHost(longRange, 609, 600);
+		DTNHost far2 = createHost(longRange, 620, 600); // two cells away
+		DTNHost short1 = createHost(shortRange, 701, 700);
+		DTNHost short2 = createHost(longRange, 698, 703); // short range
+		DTNHost short3 = createHost(longRange, 698, 706);
+		checkAll();
+
+		assertNear(e1, e2);
+		assertNear(sw1, sw2);
+		assertNear(s1, s2);
+		assertNear(se1, se2);
+		assertNear(ne1, ne2);
+		assertNotNear(far1, far2);
+		assertNear(short1, short2);
+		assertNotNear(short1, short3);
+		assertNear(short2, short3);
+		assertNotNear(e1, sw1);
+	}
+
+	public void testWorldEdges() throws Exception {
+		DTNHost a = createHost(longRange, 0, 0);
+		DTNHost b = createHost(longRange, 0, 9);
+		DTNHost c = createHost(longRange, WORLD_SIZE, WORLD_SIZE);
+		DTNHost d = createHost(longRange, WORLD_SIZE - 6, WORLD_SIZE);
+		DTNHost e = createHost(longRange, WORLD_SIZE, WORLD_SIZE - 9);
+		DTNHost f = createHost(longRange, WORLD_SIZE, 0);
+		DTNHost g = createHost(longRange, WORLD_SIZE - 3, 4);
+		DTNHost h = createHost(longRange, 0, WORLD_SIZE);
+		checkAll();
+
+		assertNear(a, b);
+		assertNear(c, d);
+		assertNear(c, e);
+		assertNotNear(d, e);
+		assertNear(f, g);
+		assertNotNear(h, a);
+		assertNotNear(h, c);
+	}
+
+	public void testRandomPlacements() throws Exception {
+		Random rng = new Random(42);
+		for (int i=0; i<300; i++) {
+			/* the first interface gives the cell size */
+			TestUtils utils = (i % 3 == 1 ? shortRange : longRange);
+			/* most of the hosts to a small area to have many pairs */
+			double size = (i < 200 ? 200 : WORLD_SIZE);
+			createHost(utils, rng.nextDouble() * size,
+					rng.nextDouble() * size);
+		}
+		int nrofNear = checkAll();
+		assertTrue(nrofNear > 0);
+
+		for (int round=1; round<=10; round++) {
+			SimClock.getInstance().setTime(round);
+			for (DTNHost h : hosts) {
+				if (rng.nextInt(4) == 0) {
+					h.setLocation(new Coord(rng.nextDouble() * 200,
+							rng.nextDouble() * 200));
+				}
+			}
+			if (round % 3 == 0) {
+				shortRange.setTransmitRange(rng.nextDouble() * CELL_SIZE);
+			}
+			checkAll();
+		}
+	}
+
+	public void testResweep() throws Exception {
+		DTNHost a = createHost(longRange, 100, 100);
+		DTNHost b = createHost(longRange, 115, 100);
+		DTNHost c = createHost(shortRange, 100, 108);
+		checkAll();
+		assertNotNear(a, b);
+		assertNotNear(a, c);
+
+		SimClock.getInstance().setTime(1);
+		b.setLocation(new Coord(108, 104));
+		checkAll();
+		assertNear(a, b);
+		assertNotNear(a, c);
+
+		SimClock.getInstance().setTime(2);
+		shortRange.setTransmitRange(CELL_SIZE);
+		checkAll();
+		assertNear(a, c);
+		assertNear(b, c);
+
+		SimClock.getInstance().setTime(3); // nothing changes
+		checkAll();
+		assertNear(a, b);
+
+		SimClock.getInstance().setTime(4);
+		a.setLocation(new Coord(300, 300));
+		checkAll();
+		assertNotNear(a, b);
+		assertNotNear(a, c);
+		assertNear(b, c);
+	}
+
+	private DTNHost createHost(TestUtils utils, double x, double y)
+			throws Exception {
+		DTNHost h = utils.createHost(new Coord(x, y));
+		hosts.add(h);
+		return h;
+	}
+
+	/**
+	 * Checks that the near interfaces of every host are exactly the ones
+	 * within range
+	 * @return The number of in-range (ordered) pairs
+	 */
+	private int checkAll() {
+		int nrofNear = 0;
+		for (DTNHost h1 : hosts) {
+			Collection<NetworkInterface> near = getNear(h1);
+			int nrofExpected = 0;
+			for (DTNHost h2 : hosts) {
+				if (h1 == h2) {
+					continue;
+				}
+				double distance = h1.getLocation().distance(h2.getLocation());
+				double range = Math.min(ni(h1).getTransmitRange(),
+						ni(h2).getTransmitRange());
+				boolean inRange = distance <= range;
+				if (inRange) {
+					nrofExpected++;
+				}
+				assertEquals(h2 + " near " + h1 + " at " + SimClock.getTime(),
+						inRange, near.contains(ni(h2)));
+			}
+			assertEquals(nrofExpected, near.size());
+			nrofNear += nrofExpected;
+		}
+		return nrofNear;
+	}
+
+	private void assertNear(DTNHost h1, DTNHost h2) {
+		assertTrue(h2 + " not near " + h1, getNear(h1).contains(ni(h2)));
+		assertTrue(h1 + " not near " + h2, getNear(h2).contains(ni(h1)));
+	}
+
+	private void assertNotNear(DTNHost h1, DTNHost h2) {
+		assertFalse(h2 + " near " + h1, getNear(h1).contains(ni(h2)));
+		assertFalse(h1 + " near " + h2, getNear(h2).contains(ni(h1)));
+	}
+
+	private Collection<NetworkInterface> getNear(DTNHost h) {
+		return grid().getNearInterfaces(ni(h));
+	}
+
+	private PairwiseConnectivityGrid grid() {
+		return PairwiseConnectivityGrid.PairwiseConnectivityGridFactory(
+				KEY, 0);
+	}
+
+	private NetworkInterface ni(DTNHost h) {
+		return h.getInterfaces().get(0);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.PredictiveConnectivityGrid;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the PredictiveConnectivityGrid. Hosts are moved along straight
+ * lines like the world moves them and the predicted near interfaces are
+ * compared with the real distances of the hosts after every move.
+ */
+public class PredictiveConnectivityGridTest extends TestCase {
+	private static final String OPTIMIZER_S = World.SETTINGS_NS + "." +
+		World.CONNECTIVITY_OPTIMIZER_S;
+	/** key of the test interfaces' grid (they all are of type "Default") */
+	private static final int KEY = "Default".hashCode();
+	/** time the hosts are moved at every step */
+	private static final double STEP = 0.5;
+	/** distances that are this much over the range may still be
+	 * predicted near (the grid extends the ranges slightly) */
+	private static final double DISTANCE_DELTA = 0.001;
+	private TestSettings ts;
+	private TestUtils utils;
+	private int nrofSteps;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		ts.putSetting(OPTIMIZER_S, "PredictiveConnectivityGrid");
+		PredictiveConnectivityGrid.reset();
+
+		utils = new TestUtils(null, null, ts);
+		utils.setTransmitRange(10);
+		nrofSteps = 0;
+	}
+
+	protected void tearDown() throws Exception {
+		ts.putSetting(OPTIMIZER_S, World.DEF_CONNECTIVITY_OPTIMIZER);
+		super.tearDown();
+	}
+
+	public void testEnterAndLeave() throws Exception {
+		DTNHost a = utils.createHost(new Coord(100, 100));
+		DTNHost b = createHost(60, 100, 140, 100, 1, 0);
+
+		double[] interval = contactInterval(a, b, 200, a, b);
+		assertEquals(30.0, interval[0]);
+		assertEquals(50.0, interval[1]);
+	}
+
+	public void testParallelTracks() throws Exception {
+		DTNHost a = createHost(100, 100, 300, 100, 2, 0);
+		DTNHost b = createHost(100, 105, 300, 105, 2, 0); // same velocity
+		DTNHost c = createHost(100, 120, 300, 120, 2, 0); // too far
+		DTNHost d = createHost(100, 108, 300, 108, 1, 0); // falls behind
+
+		for (int i=0; i<300; i++) {
+			step(a, b, c, d);
+			assertNear(a, b);
+			assertNotNear(a, c);
+			assertNotNear(b, c);
+			if (SimClock.getTime() <= 6) { // |(t,8)| <= 10
+				assertNear(a, d);
+			}
+			else {
+				assertNotNear(a, d);
+			}
+		}
+	}
+
+	public void testWaitingHost() throws Exception {
+		DTNHost a = utils.createHost(new Coord(100, 100));
+		DTNHost b = createHost(60, 100, 140, 100, 1, 20);
+
+		double[] interval = contactInterval(a, b, 200, a, b);
+		assertEquals(50.0, interval[0]);
+		assertEquals(70.0, interval[1]);
+	}
+
+	public void testRangeChange() throws Exception {
+		utils.setTransmitRange(20); // the first interface gives the cell size
+		DTNHost a = utils.createHost(new Coord(100, 100));
+		DTNHost b = utils.createHost(new Coord(115, 100));
+		DTNHost c = createHost(100, 110, 100, 200, 1, 0);
+		utils.setTransmitRange(10);
+		updateLocations(a, b, c);
+		assertNotNear(a, b);
+		assertNear(a, c);
+
+		utils.setTransmitRange(20);
+		updateLocations(a, b, c);
+		assertNear(a, b);
+		assertNear(a, c);
+
+		for (int i=0; i<40; i++) {
+			double time = SimClock.getTime();
+			if (time == 4) {
+				utils.setTransmitRange(10);
+			}
+			else if (time == 8) {
+				utils.setTransmitRange(20);
+			}
+			step(a, b, c);
+		}
+		/* c was within range 20 until time 10 */
+		assertNotNear(a, c);
+		assertNear(a, b);
+	}
+
+	public void testLocationSetDirectly() throws Exception {
+		DTNHost a = utils.createHost(new Coord(100, 100));
+		DTNHost b = utils.createHost(new Coord(100, 115));
+		step(a, b);
+		assertNotNear(a, b);
+
+		b.setLocation(new Coord(100, 108));
+		step(a, b);
+		assertNear(a, b);
+	}
+
+	public void testHostBecomesInactive() throws Exception {
+		DTNHost a = utils.createHost(new Coord(100, 100));
+		LinearMovement mm = new LinearMovement(new Coord(60, 100),
+				new Coord(140, 100), 1, 0);
+		mm.setActiveTimes(0, 20); // stops at (80,100) before the contact
+		DTNHost b = utils.createHost(mm, null);
+
+		double[] interval = contactInterval(a, b, 200, a, b);
+		assertEquals(Double.POSITIVE_INFINITY, interval[0]);
+		assertEquals(80.0, b.getLocation().getX());
+	}
+
+	/**
+	 * Creates a host that moves along a line
+	 */
+	private DTNHost createHost(double x1, double y1, double x2, double y2,
+			double speed, double startTime) throws Exception {
+		return utils.createHost(new LinearMovement(new Coord(x1, y1),
+				new Coord(x2, y2), speed, startTime), null);
+	}
+
+	/**
+	 * Moves the hosts for the given number of steps and returns the first
+	 * and the last time when two of the hosts were near each other
+	 * @return The first and the last time or positive infinities if the
+	 * hosts were never near
+	 */
+	private double[] contactInterval(DTNHost h1, DTNHost h2, int steps,
+			DTNHost... hosts) {
+		double[] interval = {Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY};
+		for (int i=0; i<steps; i++) {
+			step(hosts);
+			if (getNear(h1).contains(ni(h2))) {
+				if (interval[0] == Double.POSITIVE_INFINITY) {
+					interval[0] = SimClock.getTime();
+				}
+				interval[1] = SimClock.getTime();
+			}
+		}
+		return interval;
+	}
+
+	/**
+	 * Moves the hosts like the world moves them, updates their locations in
+	 * the grid and checks that the near interfaces of every host match the
+	 * distances
+	 */
+	private void step(DTNHost... hosts) {
+		for (DTNHost h : hosts) {
+			h.move(STEP);
+		}
+		nrofSteps++;
+		SimClock.getInstance().setTime(nrofSteps * STEP);
+		updateLocations(hosts);
+
+		for (DTNHost h1 : hosts) {
+			Collection<NetworkInterface> near = getNear(h1);
+			for (DTNHost h2 : hosts) {
+				if (h1 == h2) {
+					continue;
+				}
+				double distance = h1.getLocation().distance(h2.getLocation());
+				double range = ni(h1).getTransmitRange();
+				if (distance <= range) {
+					assertTrue(h2 + " not near " + h1 + " at " +
+							SimClock.getTime(), near.contains(ni(h2)));
+				}
+				else if (distance > range + DISTANCE_DELTA) {
+					assertFalse(h2 + " near " + h1 + " at " +
+							SimClock.getTime(), near.contains(ni(h2)));
+				}
+			}
+		}
+	}
+
+	private void updateLocations(DTNHost... hosts) {
+		for (DTNHost h : hosts) {
+			grid().updateLocation(ni(h));
+		}
+	}
+
+	private void assertNear(DTNHost h1, DTNHost h2) {
+		assertTrue(h2 + " not near " + h1, getNear(h1).contains(ni(h2)));
+		assertTrue(h1 + " not near " + h2, getNear(h2).contains(ni(h1)));
+	}
+
+	private void assertNotNear(DTNHost h1, DTNHost h2) {
+		assertFalse(h2 + " near " + h1, getNear(h1).contains(ni(h2)));
+		assertFalse(h1 + " near " + h2, getNear(h2).contains(ni(h1)));
+	}
+
+	private Collection<NetworkInterface> getNear(DTNHost h) {
+		return grid().getNearInterfaces(ni(h));
+	}
+
+	private PredictiveConnectivityGrid grid() {
+		return PredictiveConnectivityGrid.PredictiveConnectivityGridFactory(
+				KEY, 0);
+	}
+
+	private NetworkInterface ni(DTNHost h) {
+		return h.getInterfaces().get(0);
+	}
+}
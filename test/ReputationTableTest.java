@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.ReputationTable;
+
+/**
+ * Tests for the reputation tables of hosts
+ */
+public class ReputationTableTest extends TestCase {
+	private ReputationTable table;
+	private DTNHost h0;
+	private DTNHost h1;
+	private DTNHost h2;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+		table = new ReputationTable(0.5, 4);
+	}
+
+	public void testCounts() {
+		table.transferred(h0, h1);
+		table.transferred(h1, h0);
+		table.transferred(h2, h0);
+
+		assertEquals(1, table.getForwarded(h0));
+		assertEquals(2, table.getReceived(h0));
+		assertEquals(0.5, table.getRatio(h0));
+		assertEquals(1, table.getForwarded(h1));
+		assertEquals(1, table.getReceived(h1));
+		assertEquals(1, table.getForwarded(h2));
+		assertEquals(0, table.getReceived(h2));
+		assertEquals(Double.POSITIVE_INFINITY, table.getRatio(h2));
+		assertEquals(-1, table.nextSuspect(0)); // sum threshold not reached
+	}
+
+	public void testSuspicions() {
+		table.transferred(h0, h1);
+		table.transferred(h1, h0);
+		table.transferred(h2, h0);
+		table.transferred(h2, h0);
+		assertEquals(1, table.getSuspicions(h0));
+		table.transferred(h2, h0);
+		assertEquals(2, table.getSuspicions(h0));
+		assertEquals(0, table.getSuspicions(h2));
+
+		table.suspect(h2);
+		assertEquals(1, table.getSuspicions(h2));
+
+		int i = table.nextSuspect(0);
+		assertEquals(h0, table.getHost(i));
+		i = table.nextSuspect(i+1);
+		assertEquals(h2, table.getHost(i));
+		assertEquals(1, table.getSuspicions(i));
+		assertEquals(-1, table.nextSuspect(i+1));
+	}
+
+	public void testSharingSuspicions() {
+		ReputationTable t0 = table;
+		ReputationTable t1 = new ReputationTable(0.5, 4);
+		ReputationTable t2 = new ReputationTable(0.5, 4);
+
+		t0.suspect(h2);
+		t1.receiveSuspicions(t0, h1, h0);
+		assertEquals(1, t1.getSuspicions(h2));
+		t0.receiveSuspicions(t1, h0, h1); // not sent back
+		assertEquals(1, t0.getSuspicions(h2));
+		t1.receiveSuspicions(t0, h1, h0); // no new changes
+		assertEquals(1, t1.getSuspicions(h2));
+
+		t0.suspect(h2);
+		t1.receiveSuspicions(t0, h1, h0);
+		assertEquals(2, t1.getSuspicions(h2));
+		assertEquals(h2, t1.getHost(t1.nextSuspect(0)));
+
+		t2.receiveSuspicions(t1, h2, h1); // passed on to other hosts
+		assertEquals(1, t2.getSuspicions(h2));
+	}
+
+	public void testBlacklist() {
+		ReputationTable t1 = new ReputationTable(0.5, 4);
+		h2.counter = 2;
+
+		table.suspect(h2);
+		assertFalse(table.isBlacklisted(h2));
+		table.suspect(h2);
+		assertTrue(table.isBlacklisted(h2));
+		assertFalse(table.isBlacklisted(h0));
+
+		t1.suspect(h2);
+		t1.receiveSuspicions(table, h1, h0);
+		assertTrue(t1.isBlacklisted(h2));
+	}
+
+	public void testNewlyBlacklisted() {
+		h1.counter = 1;
+		h2.counter = 2;
+		assertEquals(-1, table.nextNewlyBlacklisted(0));
+
+		table.suspect(h2);
+		assertEquals(-1, table.nextNewlyBlacklisted(0));
+		table.suspect(h1);
+		table.suspect(h2);
+		assertEquals(h1.getAddress(), table.nextNewlyBlacklisted(0));
+		assertEquals(h2.getAddress(),
+				table.nextNewlyBlacklisted(h1.getAddress() + 1));
+		assertEquals(-1, table.nextNewlyBlacklisted(h2.getAddress() + 1));
+
+		table.clearNewlyBlacklisted();
+		table.suspect(h2); // already blacklisted
+		assertEquals(-1, table.nextNewlyBlacklisted(0));
+		assertTrue(table.isBlacklisted(h2));
+	}
+}
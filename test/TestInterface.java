@@ -16,6 +16,11 @@ public class TestInterface extends NetworkInterface {
 		transmitSpeed = speed;
 	}
 	
+	public TestInterface(double range, int speed, int slots) {
+		this(range, speed);
+		transferSlots = slots;
+	}
+	
 	public TestInterface(TestInterface ti) {
 		super(ti);
 	}
@@ -69,7 +74,7 @@ public class TestInterface extends NetworkInterface {
 
 			if (!isWithinRange(anotherInterface)) {
 				disconnect(con,anotherInterface);
-				connections.remove(i);
+				removeConnection(con, anotherInterface);
 			}
 			else {
 				i++;
@@ -29,6 +29,7 @@ public class TestUtils {
 	private String groupId = "h";
 	private List<DTNHost> allHosts;
 	private MessageRouter mr;
+	private int transferSlots = 1;
 	
 	private ModuleCommunicationBus comBus;
 
@@ -89,6 +90,13 @@ public class TestUtils {
 		this.comBus.updateProperty(NetworkInterface.SPEED_ID, transmitSpeed);
 	}
 	
+	/**
+	 * @param transferSlots the transfer slots of the interfaces to create
+	 */
+	public void setTransferSlots(int transferSlots) {
+		this.transferSlots = transferSlots;
+	}
+	
 	/**
 	 * Creates a host to a location with stationary movement model and
 	 * MessageRouter router.
@@ -110,7 +118,7 @@ public class TestUtils {
 	public DTNHost createHost(MovementModel mmProto, String name) throws IOException {		
 		NetworkInterface ni = new TestInterface(
 				comBus.getDouble(NetworkInterface.RANGE_ID, -1),
-				comBus.getInt(NetworkInterface.SPEED_ID, -1));
+				comBus.getInt(NetworkInterface.SPEED_ID, -1), transferSlots);
 		ni.setClisteners(conListeners);
 		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
 		li.add(ni);
@@ -5,14 +5,21 @@
 package test;
 
 import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.TestCase;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
 import core.UpdateListener;
 import core.World;
@@ -98,6 +105,114 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(5);
 
 	}
+
+	public void testParallelMovement() throws Exception {
+		List<DTNHost> parallel = runMovement(true);
+		List<DTNHost> serial = runMovement(false);
+
+		for (int i=0; i<serial.size(); i++) {
+			DTNHost s = serial.get(i);
+			DTNHost p = parallel.get(i);
+			/* also the inactive hosts' moved times are advanced */
+			assertEquals(SimClock.getTime(), p.getMovedTime(), TIME_DELTA);
+			assertEquals(s.getMovedTime(), p.getMovedTime());
+			assertEquals(s.getLocation(), p.getLocation());
+		}
+	}
+
+	/**
+	 * Runs a world with moving hosts, half of which are active only for a
+	 * while, with serial or parallel movement
+	 * @param parallelMovement Should the hosts be moved in parallel
+	 * @return The hosts after the run
+	 */
+	private List<DTNHost> runMovement(boolean parallelMovement)
+			throws Exception {
+		SimClock.reset();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.PARALLEL_MOVEMENT_S,
+				"" + parallelMovement);
+		ConnectivityGrid.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+
+		for (int i=0; i<10; i++) {
+			LinearMovement mm = new LinearMovement(new Coord(100 + 50*i, 100),
+					new Coord(100 + 50*i, 600), 1 + i*0.5, i);
+			if (i % 2 == 1) {
+				mm.setActiveTimes(5, 15);
+			}
+			utils.createHost(mm, null);
+		}
+
+		World w = new World(utils.getAllHosts(), 1000, 1000, upInterval,
+				new ArrayList<UpdateListener>(), simulateConnections,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<200; i++) {
+			w.update();
+		}
+		return utils.getAllHosts();
+	}
+
+	public void testParallelUpdates() throws Exception {
+		List<String> parallel = runUpdates(true);
+		List<String> serial = runUpdates(false);
+
+		assertTrue(serial.size() > 0);
+		assertEquals(serial, parallel);
+	}
+
+	/**
+	 * Runs a world with hosts whose paths cross each other with serial or
+	 * parallel host updates
+	 * @param parallelUpdates Should the hosts' updates be prepared in parallel
+	 * @return The connection events of the run with the times and the
+	 * indexes of the hosts
+	 */
+	private List<String> runUpdates(boolean parallelUpdates)
+			throws Exception {
+		SimClock.reset();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.PARALLEL_UPDATES_S,
+				"" + parallelUpdates);
+		ConnectivityGrid.reset();
+
+		final List<String> events = new ArrayList<String>();
+		final List<DTNHost> hosts = new ArrayList<DTNHost>();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost h1, DTNHost h2) {
+				events.add(SimClock.getTime() + " up " + hosts.indexOf(h1) +
+						" " + hosts.indexOf(h2));
+			}
+			public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+				events.add(SimClock.getTime() + " down " + hosts.indexOf(h1) +
+						" " + hosts.indexOf(h2));
+			}
+		});
+
+		/* the test interfaces don't look for new connections */
+		ts.putSetting("Interface." + NetworkInterface.TRANSMIT_RANGE_S, "30");
+		ts.putSetting("Interface." + NetworkInterface.TRANSMIT_SPEED_S, "1");
+		List<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		ni.add(new SimpleBroadcastInterface(new Settings("Interface")));
+		ni.get(0).setClisteners(cl);
+		MessageRouter router = new PassiveRouter(ts);
+
+		for (int i=0; i<10; i++) {
+			hosts.add(new DTNHost(null, null, "h", ni,
+					new ModuleCommunicationBus(), new LinearMovement(
+					new Coord(100 + 40*i, 100), new Coord(460 - 40*i, 500),
+					2 + i*0.3, i), router));
+		}
+
+		World w = new World(hosts, 1000, 1000, upInterval,
+				new ArrayList<UpdateListener>(), simulateConnections,
+				new ArrayList<EventQueue>());
+		for (int i=0; i<2000; i++) {
+			w.update();
+		}
+		return events;
+	}
 	
 
 	/** Dummy scenario for providing test values for the World */ 
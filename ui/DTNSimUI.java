@@ -9,6 +9,7 @@ import java.util.Vector;
 import report.Report;
 import core.ApplicationListener;
 import core.ConnectionListener;
+import core.DetectionListener;
 import core.MessageListener;
 import core.MovementListener;
 import core.Settings;
@@ -153,6 +154,9 @@ public abstract class DTNSimUI {
 		if (r instanceof ApplicationListener) {
 			scen.addApplicationListener((ApplicationListener)r);
 		}
+		if (r instanceof DetectionListener) {
+			scen.addDetectionListener((DetectionListener)r);
+		}
 
 		this.reports.add(r);
 	}